@@ -0,0 +1,69 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// One full listing page, as written by the card endpoints. PageImpl is what the API serialized before PageResponse
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageResponseSerializationBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Page<CardResponse> page;
+    private PageResponse<CardResponse> pageResponse;
+
+    @Setup
+    public void setUp() {
+        CardResponse.CardholderResponse holder = new CardResponse.CardholderResponse(UUID.randomUUID(), "benchmark");
+        List<CardResponse> cards = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            cards.add(new CardResponse(
+                UUID.randomUUID(),
+                "************" + (1000 + i),
+                "12/30",
+                CardStatus.ACTIVE,
+                new BigDecimal("1234.56"),
+                holder
+            ));
+        }
+
+        page = new PageImpl<>(cards, PageRequest.of(0, PAGE_SIZE), 10_000);
+        pageResponse = PageResponse.exact(page);
+    }
+
+    @Benchmark
+    public byte[] pageResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pageResponse);
+    }
+
+    @Benchmark
+    public byte[] legacyPageImpl() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserResponseBenchmark {
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = User.builder()
+            .id(UUID.randomUUID())
+            .username("benchmark")
+            .password("password")
+            .roles(Set.of(
+                Role.builder().id(1).name("ROLE_USER").build(),
+                Role.builder().id(2).name("ROLE_ADMIN").build()
+            ))
+            .build();
+    }
+
+    @Benchmark
+    public UserResponse fromUser() {
+        return UserResponse.fromUser(user);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Per-request cost of authenticating a bearer token: the old three-parse flow against JwtService.verify
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private static final String SECRET = "bXktdmVyeS1sb25nLWJlbmNobWFyay1zZWNyZXQta2V5LWZvci1obWFjLXNoYQ==";
+
+    private JwtService uncachedJwtService;
+    private JwtService cachedJwtService;
+    private User user;
+    private String jwt;
+
+    @Setup
+    public void setUp() {
+        uncachedJwtService = new JwtService(SECRET, 86_400_000L, 0);
+        cachedJwtService = new JwtService(SECRET, 86_400_000L, 1_000);
+        user = User.builder()
+            .username("benchmark")
+            .password("password")
+            .roles(Set.of(Role.builder().name("ROLE_USER").build()))
+            .build();
+        jwt = uncachedJwtService.generateJwt(user);
+    }
+
+    @Benchmark
+    public String generate() {
+        return uncachedJwtService.generateJwt(user);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String username = legacyExtractAllClaims(jwt).getSubject();
+        return legacyExtractAllClaims(jwt).getSubject().equals(username)
+            && !legacyExtractAllClaims(jwt).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public VerifiedJwt verify() {
+        return uncachedJwtService.verify(jwt);
+    }
+
+    @Benchmark
+    public VerifiedJwt verifyCached() {
+        return cachedJwtService.verify(jwt);
+    }
+
+    private Claims legacyExtractAllClaims(String jwt) {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser()
+            .verifyWith(key)
+            .build()
+            .parseSignedClaims(jwt)
+            .getPayload();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.Application;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.TestCards;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Transfers between each thread's own card and one shared card through UserCardService against the real database.
+// Every commit waits while holding the shared card's locks, so the stripe count sets how many commits can wait at once.
+// A local disk flushes in well under a millisecond, so commitLatencyMillis adds the wait of a synchronous replica or a
+// network disk: a deferred trigger sleeps at commit, once per transfer. It is created for the run and dropped after it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(3)
+@Threads(HotCardTransferBenchmark.THREADS)
+public class HotCardTransferBenchmark {
+    static final int THREADS = 16;
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"0", "4", "16"})
+    private int stripes;
+
+    @Param({"0", "2", "5"})
+    private int commitLatencyMillis;
+
+    private ConfigurableApplicationContext context;
+    private UserCardService userCardService;
+    private CardRepository cardRepository;
+    private User user;
+    private Card hotCard;
+    private final Queue<UUID> cardIds = new ConcurrentLinkedQueue<>();
+
+    @State(Scope.Thread)
+    public static class ThreadCard {
+        private TransferRequest fromHotCard;
+        private TransferRequest toHotCard;
+        private boolean outgoing;
+
+        @Setup
+        public void setUp(HotCardTransferBenchmark benchmark) {
+            UUID ownCardId = benchmark.createCard();
+            String hotCardId = benchmark.hotCard.getId().toString();
+            fromHotCard = new TransferRequest(hotCardId, ownCardId.toString(), AMOUNT);
+            toHotCard = new TransferRequest(ownCardId.toString(), hotCardId, AMOUNT);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.hikari.maximum-pool-size=" + THREADS,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.bankcards=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql=WARN"
+            );
+        userCardService = context.getBean(UserCardService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        dropCommitLatency(jdbcTemplate);
+        if (commitLatencyMillis > 0) {
+            jdbcTemplate.execute("""
+                CREATE FUNCTION benchmark_commit_latency() RETURNS trigger LANGUAGE plpgsql AS $$
+                BEGIN
+                    PERFORM pg_sleep(%d / 1000.0);
+                    RETURN NULL;
+                END
+                $$
+                """.formatted(commitLatencyMillis));
+            jdbcTemplate.execute("""
+                CREATE CONSTRAINT TRIGGER benchmark_commit_latency
+                AFTER INSERT ON card_transactions
+                DEFERRABLE INITIALLY DEFERRED
+                FOR EACH ROW WHEN (NEW.type = 'DEBIT')
+                EXECUTE FUNCTION benchmark_commit_latency()
+                """);
+        }
+        cardRepository = context.getBean(CardRepository.class);
+
+        user = context.getBean(UserRepository.class).save(User.builder()
+            .username("benchmark-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+        hotCard = cardRepository.findById(createCard()).orElseThrow();
+        context.getBean(AdminCardService.class)
+            .updateBalanceStripes(hotCard.getId(), new UpdateBalanceStripesRequest(stripes));
+    }
+
+    @TearDown
+    public void tearDown() {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        dropCommitLatency(jdbcTemplate);
+        List<UUID> ids = List.copyOf(cardIds);
+        ids.forEach(id -> jdbcTemplate.update("DELETE FROM card_transactions WHERE card_id = ?", id));
+        cardRepository.deleteAllById(ids);
+        context.getBean(UserRepository.class).delete(user);
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer(ThreadCard threadCard) {
+        threadCard.outgoing = !threadCard.outgoing;
+        userCardService.transferMoney(user, threadCard.outgoing ? threadCard.fromHotCard : threadCard.toHotCard);
+    }
+
+    // Also clears what an interrupted run left behind
+    private static void dropCommitLatency(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS benchmark_commit_latency ON card_transactions");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS benchmark_commit_latency()");
+    }
+
+    private UUID createCard() {
+        Card card = cardRepository.save(TestCards.card(user).balance(INITIAL_BALANCE).build());
+        cardIds.add(card.getId());
+        return card.getId();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.projections.CardView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardMapperBenchmark {
+    private final CardMapper cardMapper = new CardMapper();
+
+    private Card card;
+    private CardView cardView;
+
+    @Setup
+    public void setUp() {
+        User holder = User.builder()
+            .id(UUID.randomUUID())
+            .username("benchmark")
+            .build();
+        card = Card.builder()
+            .id(UUID.randomUUID())
+            .number("4111111111111111")
+            .numberLast4("1111")
+            .expiryDate("12/30")
+            .status(CardStatus.ACTIVE)
+            .balance(new BigDecimal("1234.56"))
+            .holder(holder)
+            .build();
+        cardView = new CardView(
+            card.getId(),
+            card.getNumberLast4(),
+            card.getExpiryDate(),
+            card.getStatus(),
+            card.getBalance(),
+            holder.getId(),
+            holder.getUsername(),
+            card.getVersion()
+        );
+    }
+
+    @Benchmark
+    public CardResponse mapEntity() {
+        return cardMapper.mapToCardResponse(card);
+    }
+
+    @Benchmark
+    public CardResponse mapView() {
+        return cardMapper.mapToCardResponse(cardView);
+    }
+}
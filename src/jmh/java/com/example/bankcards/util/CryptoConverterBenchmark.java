@@ -0,0 +1,65 @@
+package com.example.bankcards.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Run with -t to see how the cipher pool behaves under contention
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoConverterBenchmark {
+    private static final String SECRET = "a6d8a1eb2314b9b3944beb67d3cea119";
+    private static final String NUMBER = "4111111111111111";
+
+    private CryptoConverter cryptoConverter;
+    private Key key;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        cryptoConverter = new CryptoConverter(SECRET);
+        key = new SecretKeySpec(SECRET.getBytes(), "AES");
+        encrypted = cryptoConverter.convertToDatabaseColumn(NUMBER);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return cryptoConverter.convertToDatabaseColumn(NUMBER);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return cryptoConverter.convertToEntityAttribute(encrypted);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(NUMBER.getBytes()));
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)));
+    }
+}
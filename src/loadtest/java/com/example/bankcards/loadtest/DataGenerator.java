@@ -0,0 +1,201 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.util.CardExpiry;
+import com.example.bankcards.util.CryptoConverter;
+import com.example.bankcards.util.Hashing;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+// Bulk-loads users and cards with COPY, bypassing the API. Card ownership follows a Zipf distribution,
+// so user <prefix>-0 holds the most cards and the long tail holds one or none
+public class DataGenerator {
+    private static final String INSERT_SUMMARIES = """
+        INSERT INTO card_summaries (user_id, status, card_count, balance)
+        SELECT user_id, status, count(*), sum(balance)
+        FROM cards
+        WHERE user_id = ANY(?)
+        GROUP BY 1, 2
+        ORDER BY 1, 2
+        """;
+
+    private final int users;
+    private final int cards;
+    private final double skew;
+    private final String prefix;
+    private final String password;
+    private final String cryptoSecret;
+    private final SplittableRandom random;
+
+    DataGenerator(Map<String, String> options) {
+        this.users = Integer.parseInt(options.getOrDefault("users", "100000"));
+        this.cards = Integer.parseInt(options.getOrDefault("cards", "1000000"));
+        this.skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        this.prefix = options.getOrDefault("prefix", "gen");
+        this.password = options.getOrDefault("password", "password");
+        this.cryptoSecret = options.getOrDefault("crypto-secret", System.getenv("CRYPTO_SECRET"));
+        this.random = new SplittableRandom(Long.parseLong(options.getOrDefault("seed", "42")));
+
+        if (cryptoSecret == null || cryptoSecret.length() < 32) {
+            throw new IllegalArgumentException("--crypto-secret (or CRYPTO_SECRET) must match the application's secret");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Options.parse(args);
+
+        try (Connection connection = DriverManager.getConnection(
+            options.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/bankcards_db"),
+            options.getOrDefault("db-username", "bankcards_user"),
+            options.getOrDefault("db-password", "bankcards_password")
+        )) {
+            connection.setAutoCommit(false);
+            new DataGenerator(options).generate(connection);
+        }
+    }
+
+    void generate(Connection connection) throws SQLException, IOException {
+        long startedAt = System.nanoTime();
+        int roleId = userRoleId(connection);
+        String passwordHash = new BCryptPasswordEncoder().encode(password);
+
+        UUID[] userIds = new UUID[users];
+        try (Writer out = copy(connection, "COPY users (id, username, password) FROM STDIN (FORMAT csv)")) {
+            for (int i = 0; i < users; i++) {
+                userIds[i] = UUID.randomUUID();
+                out.append(userIds[i].toString()).append(',')
+                    .append(username(i)).append(',')
+                    .append(passwordHash).append('\n');
+            }
+        }
+
+        try (Writer out = copy(connection, "COPY users_roles (user_id, role_id) FROM STDIN (FORMAT csv)")) {
+            for (UUID userId : userIds) {
+                out.append(userId.toString()).append(',').append(String.valueOf(roleId)).append('\n');
+            }
+        }
+        log("users", users, startedAt);
+
+        CryptoConverter cryptoConverter = new CryptoConverter(cryptoSecret);
+        double[] ownership = zipfDistribution(users, skew);
+        long firstNumber = random.nextLong(4_000_000_000_000_000L, 5_000_000_000_000_000L - cards);
+        YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+        long cardsStartedAt = System.nanoTime();
+
+        try (Writer out = copy(connection,
+            "COPY cards (id, version, number, number_hash, number_last4, expiry_date, expires_at, status, balance, user_id) FROM STDIN (FORMAT csv)")) {
+            for (int i = 0; i < cards; i++) {
+                String number = String.valueOf(firstNumber + i);
+                String status = status();
+                String expiryDate = CardExpiry.expiryDate(expiryMonth(status, currentMonth));
+                out.append(UUID.randomUUID().toString()).append(",0,")
+                    .append(cryptoConverter.convertToDatabaseColumn(number)).append(',')
+                    .append(Hashing.sha256Hex(number + cryptoSecret)).append(',')
+                    .append(number, 12, 16).append(',')
+                    .append(expiryDate).append(',')
+                    .append(CardExpiry.expiresAt(expiryDate).toString()).append(',')
+                    .append(status).append(',')
+                    .append(String.valueOf(random.nextInt(1_000, 1_000_000))).append(".00,")
+                    .append(userIds[owner(ownership)].toString()).append('\n');
+            }
+        }
+        log("cards", cards, cardsStartedAt);
+
+        // COPY skips the service that keeps card_summaries, so the generated users' summaries are built in the same
+        // transaction as their cards
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SUMMARIES)) {
+            statement.setArray(1, connection.createArrayOf("uuid", userIds));
+            statement.executeUpdate();
+        }
+
+        connection.commit();
+
+        // Fresh planner statistics, otherwise the first queries plan for the tables' previous sizes
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE users");
+            statement.execute("ANALYZE users_roles");
+            statement.execute("ANALYZE cards");
+            statement.execute("ANALYZE card_summaries");
+        }
+
+        System.out.printf(
+            "Generated %d users (%s-0 .. %s-%d, password \"%s\") and %d cards in %.1f s%n",
+            users, prefix, prefix, users - 1, password, cards, (System.nanoTime() - startedAt) / 1_000_000_000.0
+        );
+    }
+
+    private String username(int index) {
+        return prefix + "-" + index;
+    }
+
+    private String status() {
+        int roll = random.nextInt(100);
+        return roll < 90 ? "ACTIVE" : roll < 97 ? "BLOCKED" : "EXPIRED";
+    }
+
+    // An EXPIRED card ran out in one of the last five years, as if the expiry job had moved it. The others stay valid
+    // for up to nine years, so the job finds nothing due right after generation
+    private YearMonth expiryMonth(String status, YearMonth currentMonth) {
+        return "EXPIRED".equals(status)
+            ? currentMonth.minusMonths(random.nextInt(1, 61))
+            : currentMonth.plusMonths(random.nextInt(0, 108));
+    }
+
+    private int owner(double[] ownership) {
+        int index = Arrays.binarySearch(ownership, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, ownership.length - 1);
+    }
+
+    // Cumulative share of cards owned by users 0..i, user i gets a share proportional to 1 / (i + 1)^skew
+    private static double[] zipfDistribution(int size, double skew) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int userRoleId(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM roles WHERE name = 'ROLE_USER'");
+             ResultSet rows = statement.executeQuery()) {
+            if (!rows.next()) {
+                throw new IllegalStateException("ROLE_USER is missing, run the application once to apply migrations");
+            }
+            return rows.getInt(1);
+        }
+    }
+
+    private static Writer copy(Connection connection, String sql) throws SQLException {
+        PGCopyOutputStream stream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, 1 << 16);
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void log(String table, int rows, long startedAt) {
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        System.out.printf("Copied %d %s in %.1f s (%.0f rows/s)%n", rows, table, seconds, rows / seconds);
+    }
+}
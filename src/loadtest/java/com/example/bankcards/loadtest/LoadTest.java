@@ -0,0 +1,339 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.util.CursorCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Closed-loop HTTP load driver: every worker is a virtual thread that sends its next request as soon as
+// the previous one completes, so the server's thread mode, not the client, sets the throughput
+public class LoadTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int cardPairs;
+    private final String userPrefix;
+    private final int users;
+    private final String userPassword;
+    private final double hotShare;
+    private final int sessionLength;
+    private final HttpClient client;
+
+    private String userToken;
+    private final List<String[]> pairs = new ArrayList<>();
+
+    LoadTest(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        this.warmup = Duration.parse("PT" + options.getOrDefault("warmup", "10s"));
+        this.duration = Duration.parse("PT" + options.getOrDefault("duration", "30s"));
+        this.cardPairs = Integer.parseInt(options.getOrDefault("card-pairs", "100"));
+        this.userPrefix = options.getOrDefault("user-prefix", "gen");
+        this.users = Integer.parseInt(options.getOrDefault("users", "100000"));
+        this.userPassword = options.getOrDefault("user-password", "password");
+        this.hotShare = Double.parseDouble(options.getOrDefault("hot-share", "0.1"));
+        this.sessionLength = Integer.parseInt(options.getOrDefault("session-length", "20"));
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Options.parse(args);
+        List<String> scenarios = Arrays.asList(options.getOrDefault("scenario", "list,transfer").split(","));
+
+        LoadTest loadTest = new LoadTest(options);
+        if (scenarios.contains("list") || scenarios.contains("transfer")) {
+            loadTest.prepare(
+                options.getOrDefault("admin-username", "admin"),
+                options.getOrDefault("admin-password", "12345678")
+            );
+        }
+
+        StringBuilder report = new StringBuilder()
+            .append("# Load test, ").append(Instant.now()).append("\n\n")
+            .append("Base URL: ").append(loadTest.baseUrl)
+            .append(", concurrency: ").append(loadTest.concurrency)
+            .append(", duration: ").append(loadTest.duration.toSeconds()).append(" s\n\n")
+            .append(Result.HEADER);
+        System.out.print(Result.HEADER);
+
+        for (String scenario : scenarios) {
+            loadTest.run(scenario, loadTest.warmup);
+            loadTest.run(scenario, loadTest.duration).forEach((operation, result) -> {
+                String row = result.row(scenario, operation, loadTest.duration);
+                System.out.print(row);
+                report.append(row);
+            });
+        }
+
+        String reportPath = options.get("report");
+        if (reportPath != null) {
+            Files.writeString(Path.of(reportPath), report);
+            System.out.println("Report written to " + reportPath);
+        }
+    }
+
+    // A fresh user with its own card pairs, so transfers from different workers rarely touch the same rows
+    void prepare(String adminUsername, String adminPassword) throws IOException, InterruptedException {
+        String adminToken = login(adminUsername, adminPassword);
+
+        String username = "loadtest-" + UUID.randomUUID().toString().substring(0, 8);
+        String password = UUID.randomUUID().toString();
+        userToken = send("POST", "/api/v1/auth/signUp", null, Map.of("username", username, "password", password))
+            .get("jwt").asText();
+
+        String cursor = CursorCodec.encode(username.substring(0, username.length() - 1));
+        String userId = null;
+        for (JsonNode user : send("GET", "/api/v1/admin/users/scroll?size=100&cursor=" + cursor, adminToken, null).get("content")) {
+            if (user.get("username").asText().equals(username)) {
+                userId = user.get("id").asText();
+            }
+        }
+        if (userId == null) {
+            throw new IllegalStateException("Signed up user " + username + " was not found");
+        }
+
+        for (int i = 0; i < cardPairs; i++) {
+            pairs.add(new String[] { createCard(adminToken, userId), createCard(adminToken, userId) });
+        }
+        System.out.printf("Prepared user %s with %d cards%n", username, cardPairs * 2);
+    }
+
+    // Results per operation, merged across workers
+    Map<String, Result> run(String scenario, Duration runFor) throws Exception {
+        long deadline = System.nanoTime() + runFor.toNanos();
+        List<Future<Map<String, Result>>> workers = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                int worker = i;
+                workers.add(executor.submit(() -> {
+                    Map<String, Result> results = new TreeMap<>();
+                    switch (scenario) {
+                        case "list", "transfer" -> runSingle(scenario, pairs.get(worker % pairs.size()), deadline, results);
+                        case "mixed" -> runMixed(deadline, results);
+                        default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+                    }
+                    return results;
+                }));
+            }
+
+            Map<String, Result> total = new TreeMap<>();
+            for (Future<Map<String, Result>> worker : workers) {
+                worker.get().forEach((operation, result) -> total.computeIfAbsent(operation, key -> new Result()).merge(result));
+            }
+            return total;
+        }
+    }
+
+    private void runSingle(String scenario, String[] pair, long deadline, Map<String, Result> results) {
+        boolean forward = true;
+        while (System.nanoTime() < deadline) {
+            if (scenario.equals("list")) {
+                call("list", request("GET", "/api/v1/cards?size=20", userToken, null), results);
+            } else {
+                call("transfer", transferRequest(userToken, forward ? pair[0] : pair[1], forward ? pair[1] : pair[0]), results);
+            }
+            forward = !forward;
+        }
+    }
+
+    // Sessions of generated users: a login, a listing of active cards, then listings, searches and transfers.
+    // Every hot-share-th session belongs to <prefix>-0, the owner with the most cards, and moves money through
+    // its first card, so those transfers contend on one row
+    private void runMixed(long deadline, Map<String, Result> results) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < deadline) {
+            boolean hot = random.nextDouble() < hotShare;
+            String username = userPrefix + "-" + (hot ? 0 : random.nextInt(users));
+
+            HttpResponse<String> login = call("login", request("POST", "/api/v1/auth/login", null,
+                Map.of("username", username, "password", userPassword)), results);
+            if (login == null || login.statusCode() != 200) {
+                continue;
+            }
+            String token = JSON.readTree(login.body()).get("jwt").asText();
+
+            HttpResponse<String> listing = call("list", request("GET", "/api/v1/cards?size=20&status=ACTIVE", token, null), results);
+            if (listing == null || listing.statusCode() != 200) {
+                continue;
+            }
+            List<String> cardIds = new ArrayList<>();
+            List<String> last4 = new ArrayList<>();
+            for (JsonNode card : JSON.readTree(listing.body()).get("content")) {
+                cardIds.add(card.get("id").asText());
+                last4.add(card.get("number").asText().substring(12));
+            }
+
+            for (int i = 0; i < sessionLength && System.nanoTime() < deadline; i++) {
+                int roll = random.nextInt(100);
+                if (roll < 40 || cardIds.isEmpty()) {
+                    call("list", request("GET", "/api/v1/cards?size=20&page=" + random.nextInt(3), token, null), results);
+                } else if (roll < 65 || cardIds.size() < 2) {
+                    String search = last4.get(random.nextInt(last4.size()));
+                    call("search", request("GET", "/api/v1/cards?size=20&search=" + search, token, null), results);
+                } else {
+                    int card = hot ? 0 : random.nextInt(cardIds.size());
+                    int other = (card + 1 + random.nextInt(cardIds.size() - 1)) % cardIds.size();
+                    boolean outgoing = random.nextBoolean();
+                    call(hot ? "hot_transfer" : "transfer", transferRequest(
+                        token,
+                        cardIds.get(outgoing ? card : other),
+                        cardIds.get(outgoing ? other : card)
+                    ), results);
+                }
+            }
+        }
+    }
+
+    private HttpResponse<String> call(String operation, HttpRequest request, Map<String, Result> results) {
+        long startedAt = System.nanoTime();
+        HttpResponse<String> response = null;
+        int status;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+        } catch (IOException ex) {
+            status = -1;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            status = -1;
+        }
+        results.computeIfAbsent(operation, key -> new Result()).record(status, System.nanoTime() - startedAt);
+        return response;
+    }
+
+    private String login(String username, String password) throws IOException, InterruptedException {
+        return send("POST", "/api/v1/auth/login", null, Map.of("username", username, "password", password))
+            .get("jwt").asText();
+    }
+
+    private String createCard(String adminToken, String userId) throws IOException, InterruptedException {
+        String number = String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+        return send("POST", "/api/v1/admin/cards", adminToken, Map.of(
+            "userId", userId,
+            "number", number,
+            "expiryDate", "12/35",
+            "initialBalance", "1000000.00"
+        )).get("id").asText();
+    }
+
+    private HttpRequest transferRequest(String token, String sourceCardId, String destinationCardId) {
+        return request("POST", "/api/v1/cards/transfer", token, Map.of(
+            "sourceCardId", sourceCardId,
+            "destinationCardId", destinationCardId,
+            "amount", "0.01"
+        ));
+    }
+
+    private JsonNode send(String method, String path, String token, Object body) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request(method, path, token, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(method + " " + path + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return JSON.readTree(response.body());
+    }
+
+    private HttpRequest request(String method, String path, String token, Object body) {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .method(method, body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body)));
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return builder.build();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static class Result {
+        static final String HEADER = """
+            | Scenario | Operation | Requests | Errors | req/s | p50, ms | p95, ms | p99, ms | Max, ms | Statuses |
+            |----------|-----------|----------|--------|-------|---------|---------|---------|---------|----------|
+            """;
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        void record(int status, long latencyNanos) {
+            addLatency(latencyNanos);
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        void merge(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                addLatency(other.latencies[i]);
+            }
+            other.statuses.forEach((status, times) -> statuses.merge(status, times, Integer::sum));
+        }
+
+        private void addLatency(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        String row(String scenario, String operation, Duration elapsed) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            long errors = statuses.entrySet().stream()
+                .filter(entry -> entry.getKey() < 200 || entry.getKey() >= 300)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+
+            return String.format(
+                "| %s | %s | %d | %d | %.1f | %.1f | %.1f | %.1f | %.1f | %s |%n",
+                scenario,
+                operation,
+                count,
+                errors,
+                count / (elapsed.toNanos() / 1_000_000_000.0),
+                percentile(sorted, 0.50),
+                percentile(sorted, 0.95),
+                percentile(sorted, 0.99),
+                count == 0 ? 0 : sorted[count - 1] / 1_000_000.0,
+                statuses
+            );
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(name = "datasource.connection-limiter.enabled", havingValue = "true")
+public class DataSourceConfig {
+    @Bean
+    public static BeanPostProcessor connectionLimiterPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                // Proxies such as the replica routing one delegate to pools that are limited already
+                if (!(bean instanceof DataSource dataSource) || bean instanceof DelegatingDataSource) {
+                    return bean;
+                }
+                // Each pool lets out as many connections as it holds, so the primary and the replica are sized apart
+                return new ConnectionLimitingDataSource(
+                    dataSource,
+                    pool(dataSource).getMaximumPoolSize(),
+                    environment.getRequiredProperty("datasource.connection-limiter.acquire-timeout", Duration.class)
+                );
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder connectionLimiterMetrics(List<DataSource> dataSources) throws SQLException {
+        // The routing proxy unwraps to the primary limiter, so each limiter is kept once
+        Set<ConnectionLimitingDataSource> limiters = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DataSource dataSource : dataSources) {
+            if (dataSource.isWrapperFor(ConnectionLimitingDataSource.class)) {
+                limiters.add(dataSource.unwrap(ConnectionLimitingDataSource.class));
+            }
+        }
+
+        return registry -> {
+            for (ConnectionLimitingDataSource limiter : limiters) {
+                Tags tags = Tags.of("pool", pool(limiter).getPoolName());
+
+                Gauge.builder("db.connection.limiter.permits", limiter, ConnectionLimitingDataSource::getMaxPermits)
+                    .description("Connections the limiter lets out at once")
+                    .tags(tags)
+                    .register(registry);
+                Gauge.builder("db.connection.limiter.active", limiter, ConnectionLimitingDataSource::getActiveConnections)
+                    .description("Connections currently checked out through the limiter")
+                    .tags(tags)
+                    .register(registry);
+                Gauge.builder("db.connection.limiter.waiting", limiter, ConnectionLimitingDataSource::getWaitingThreads)
+                    .description("Threads queued for a connection permit")
+                    .tags(tags)
+                    .register(registry);
+                FunctionTimer.builder(
+                        "db.connection.limiter.wait",
+                        limiter,
+                        source -> source.getAcquiredCount() + source.getTimeoutCount(),
+                        ConnectionLimitingDataSource::getTotalWaitNanos,
+                        TimeUnit.NANOSECONDS
+                    )
+                    .description("Time spent waiting for a connection permit")
+                    .tags(tags)
+                    .register(registry);
+                FunctionCounter.builder("db.connection.limiter.timeouts", limiter, ConnectionLimitingDataSource::getTimeoutCount)
+                    .description("Connection requests rejected after the acquire timeout")
+                    .tags(tags)
+                    .register(registry);
+            }
+        };
+    }
+
+    private static HikariDataSource pool(DataSource dataSource) {
+        try {
+            return dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Connection limiter needs a Hikari pool to size itself", ex);
+        }
+    }
+}
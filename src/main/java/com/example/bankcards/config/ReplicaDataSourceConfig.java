@@ -0,0 +1,71 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Read-only transactions go to the replica pool, everything else to the primary. The physical connection is taken
+// lazily, on the first statement, because the transaction manager marks a connection read-only only after getting it
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        return new HikariDataSource();
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+        @Value("${datasource.replica.read-your-writes.window}") Duration window,
+        @Value("${datasource.replica.read-your-writes.maximum-size}") long maximumSize
+    ) {
+        return new ReadYourWritesTracker(window, maximumSize);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+        @Qualifier("replicaDataSource") DataSource replicaDataSource,
+        @Value("${datasource.replica.max-lag}") Duration maxLag,
+        MeterRegistry meterRegistry
+    ) {
+        return new ReplicaLagMonitor(replicaDataSource, maxLag, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+        @Qualifier("primaryDataSource") DataSource primaryDataSource,
+        @Qualifier("replicaDataSource") DataSource replicaDataSource,
+        ReadYourWritesTracker readYourWritesTracker,
+        ReplicaLagMonitor replicaLagMonitor,
+        MeterRegistry meterRegistry
+    ) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(
+            primaryDataSource,
+            replicaDataSource,
+            readYourWritesTracker,
+            replicaLagMonitor,
+            meterRegistry
+        ));
+        return dataSource;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Polls the replica for its replay delay. An idle primary sends nothing to replay, so a replica
+// that has replayed everything it received counts as caught up however old its last transaction is
+@Slf4j
+public class ReplicaLagMonitor {
+    private static final String LAG_QUERY = """
+        SELECT CASE
+            WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+            ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 'Infinity')
+        END
+        """;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final double maxLagSeconds;
+
+    // Until the first check the replica is not trusted
+    private volatile double lagSeconds = Double.POSITIVE_INFINITY;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.maxLagSeconds = maxLag.toNanos() / 1e9;
+
+        Gauge.builder("db.replica.lag", this, ReplicaLagMonitor::getLagSeconds)
+            .description("Replay delay of the read replica as of the last check, infinite when it is unreachable")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval}")
+    public void check() {
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Double.class);
+            recordLag(lag != null ? lag : Double.POSITIVE_INFINITY);
+        } catch (DataAccessException ex) {
+            log.warn("Replica lag check failed, reads go to the primary: {}", ex.getMessage());
+            recordLag(Double.POSITIVE_INFINITY);
+        }
+    }
+
+    public boolean isLagging() {
+        return lagSeconds > maxLagSeconds;
+    }
+
+    public double getLagSeconds() {
+        return lagSeconds;
+    }
+
+    void recordLag(double seconds) {
+        this.lagSeconds = seconds;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Picks the pool for a connection that is already marked read-only: the replica,
+// unless the current user has just written or the replica is too far behind
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final ReplicaLagMonitor lagMonitor;
+
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter laggingReads;
+
+    public ReplicaRoutingDataSource(
+        DataSource primaryDataSource,
+        DataSource replicaDataSource,
+        ReadYourWritesTracker readYourWritesTracker,
+        ReplicaLagMonitor lagMonitor,
+        MeterRegistry meterRegistry
+    ) {
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(Target.PRIMARY, primaryDataSource, Target.REPLICA, replicaDataSource));
+        setDefaultTargetDataSource(primaryDataSource);
+        afterPropertiesSet();
+
+        this.replicaReads = readCounter("replica", "replica", meterRegistry);
+        this.stickyReads = readCounter("primary", "recent_write", meterRegistry);
+        this.laggingReads = readCounter("primary", "replica_lag", meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (readYourWritesTracker.hasRecentWrite()) {
+            stickyReads.increment();
+            return Target.PRIMARY;
+        }
+        if (lagMonitor.isLagging()) {
+            laggingReads.increment();
+            return Target.PRIMARY;
+        }
+        replicaReads.increment();
+        return Target.REPLICA;
+    }
+
+    private static Counter readCounter(String target, String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("db.replica.routing")
+            .description("Read-only transactions by the pool they were sent to")
+            .tag("target", target)
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
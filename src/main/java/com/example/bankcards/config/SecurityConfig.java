@@ -1,8 +1,15 @@
 package com.example.bankcards.config;
 
 import com.example.bankcards.exception.ApplicationAuthenticationEntryPoint;
+import com.example.bankcards.security.BoundedPasswordEncoder;
 import com.example.bankcards.security.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -25,9 +32,21 @@ public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final ApplicationAuthenticationEntryPoint applicationAuthenticationEntryPoint;
 
+    // Hashes weaker than bcrypt-strength are re-encoded on the next successful login,
+    // see ApplicationUserDetailsService.updatePassword
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+        @Value("${security.password.bcrypt-strength}") int strength,
+        @Value("${security.password.hashing-threads}") int threads,
+        @Value("${security.password.hashing-queue-capacity}") int queueCapacity,
+        MeterRegistry meterRegistry
+    ) {
+        return new BoundedPasswordEncoder(
+            new BCryptPasswordEncoder(strength),
+            threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+            queueCapacity,
+            meterRegistry
+        );
     }
 
     @Bean
@@ -46,12 +65,18 @@ public class SecurityConfig {
             .exceptionHandling(exception -> exception
                 .authenticationEntryPoint(applicationAuthenticationEntryPoint))
             .authorizeHttpRequests(auth -> auth
+                // Error pages render the status already decided for the request, which carries no JWT by then
+                .dispatcherTypeMatchers(DispatcherType.ERROR).permitAll()
                 .requestMatchers(
                     "/docs/**",
                     "/v3/api-docs/**",
                     "/swagger-ui.html",
                     "/swagger-ui/**",
                     "/api/v1/auth/**").permitAll()
+                // Actuator is served only on the internal management port. Monitoring scrapes it there without a JWT,
+                // the rest of it is for administrators, and on the public port these paths need a JWT like any other
+                .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
+                .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN")
                 .anyRequest().authenticated())
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
@@ -1,20 +1,37 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CardImportResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSummaryResponse;
 import com.example.bankcards.dto.CreateCardRequest;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
 import com.example.bankcards.dto.UpdateCardStatusRequest;
+import com.example.bankcards.entity.User;
 import com.example.bankcards.service.AdminCardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.util.CardImportReader;
+import com.example.bankcards.util.ExportWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/admin/cards")
@@ -23,17 +40,59 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AdminCardController {
     private final AdminCardService adminCardService;
+    private final CardImportReader cardImportReader;
+    private final IdempotencyService idempotencyService;
+    private final ExportWriter exportWriter;
 
     @GetMapping
-    public ResponseEntity<Page<CardResponse>> getAllCards(Pageable pageable) {
-        Page<CardResponse> cards = adminCardService.getAllCards(pageable);
+    public ResponseEntity<PageResponse<CardResponse>> getAllCards(
+        Pageable pageable,
+        @RequestParam(defaultValue = "EXACT", name = "count") PageResponse.CountMode countMode
+    ) {
+        PageResponse<CardResponse> cards = adminCardService.getAllCards(pageable, countMode);
+        return ResponseEntity.ok(cards);
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<CardResponse>> scrollAllCards(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        CursorPageResponse<CardResponse> cards = adminCardService.scrollAllCards(cursor, size);
         return ResponseEntity.ok(cards);
     }
 
+    @GetMapping("/summary")
+    public ResponseEntity<CardSummaryResponse> getCardSummary() {
+        CardSummaryResponse summary = this.adminCardService.getCardSummary();
+        return ResponseEntity.ok(summary);
+    }
+
     @PostMapping
-    public ResponseEntity<CardResponse> createCard(@RequestBody @Valid CreateCardRequest request) {
-        CardResponse createdCard = this.adminCardService.createCard(request);
-        return new ResponseEntity<>(createdCard, HttpStatus.CREATED);
+    public ResponseEntity<CardResponse> createCard(
+        @AuthenticationPrincipal User admin,
+        @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+        @RequestBody @Valid CreateCardRequest request
+    ) {
+        Supplier<ResponseEntity<CardResponse>> creation = () ->
+            new ResponseEntity<>(this.adminCardService.createCard(request), HttpStatus.CREATED);
+
+        if (idempotencyKey == null) {
+            return creation.get();
+        }
+        return this.idempotencyService.execute("card-creation", admin.getId(), idempotencyKey, request, CardResponse.class, creation);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CardImportResponse> importCardsFromJson(InputStream body) {
+        CardImportResponse response = this.adminCardService.importCards(cardImportReader.readJson(body));
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<CardImportResponse> importCardsFromCsv(InputStream body) {
+        CardImportResponse response = this.adminCardService.importCards(cardImportReader.readCsv(body));
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
     @PatchMapping("/{id}/status")
@@ -45,9 +104,29 @@ public class AdminCardController {
         return ResponseEntity.ok(updatedCard);
     }
 
+    @PatchMapping("/{id}/balance-stripes")
+    public ResponseEntity<CardResponse> updateBalanceStripes(
+        @PathVariable UUID id,
+        @RequestBody @Valid UpdateBalanceStripesRequest request
+    ) {
+        CardResponse updatedCard = this.adminCardService.updateBalanceStripes(id, request);
+        return ResponseEntity.ok(updatedCard);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteCard(@PathVariable UUID id) {
         this.adminCardService.deleteCard(id);
     }
+
+    @GetMapping("/export")
+    public void exportCards(
+        @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+        @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream output = this.exportWriter.open(response, "cards", format, acceptEncoding)) {
+            this.adminCardService.exportCards(format, output);
+        }
+    }
 }
@@ -1,26 +1,69 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.service.AdminUserService;
+import com.example.bankcards.util.ExportWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/api/v1/admin/users")
 @PreAuthorize("hasRole('ADMIN')")
 @RequiredArgsConstructor
 public class AdminUserController {
     private final AdminUserService adminUserService;
+    private final ExportWriter exportWriter;
 
     @GetMapping
-    public ResponseEntity<Page<UserResponse>> getAllUsers(Pageable pageable) {
-        Page<UserResponse> users = adminUserService.getAllUsers(pageable);
+    public ResponseEntity<PageResponse<UserResponse>> getAllUsers(
+        Pageable pageable,
+        @RequestParam(defaultValue = "EXACT", name = "count") PageResponse.CountMode countMode
+    ) {
+        PageResponse<UserResponse> users = adminUserService.getAllUsers(pageable, countMode);
+        return ResponseEntity.ok(users);
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<UserResponse>> scrollAllUsers(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        CursorPageResponse<UserResponse> users = adminUserService.scrollAllUsers(cursor, size);
         return ResponseEntity.ok(users);
     }
+
+    @GetMapping("/{id}/card-summary")
+    public ResponseEntity<CardSummaryResponse> getCardSummary(@PathVariable UUID id) {
+        CardSummaryResponse summary = adminUserService.getCardSummary(id);
+        return ResponseEntity.ok(summary);
+    }
+
+    @GetMapping("/export")
+    public void exportUsers(
+        @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+        @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        HttpServletResponse response
+    ) throws IOException {
+        try (OutputStream output = exportWriter.open(response, "users", format, acceptEncoding)) {
+            adminUserService.exportUsers(format, output);
+        }
+    }
 }
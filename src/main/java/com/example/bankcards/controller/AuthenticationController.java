@@ -4,6 +4,7 @@ import com.example.bankcards.dto.JwtAuthenticationResponse;
 import com.example.bankcards.dto.LoginRequest;
 import com.example.bankcards.dto.SignUpRequest;
 import com.example.bankcards.service.AuthenticationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -21,13 +22,19 @@ public class AuthenticationController {
     private final AuthenticationService authenticationService;
 
     @PostMapping("/signUp")
-    public ResponseEntity<JwtAuthenticationResponse> signUp(@RequestBody @Valid SignUpRequest request) {
-        return ResponseEntity.ok(this.authenticationService.signUp(request));
+    public ResponseEntity<JwtAuthenticationResponse> signUp(
+        @RequestBody @Valid SignUpRequest request,
+        HttpServletRequest httpRequest
+    ) {
+        return ResponseEntity.ok(this.authenticationService.signUp(request, httpRequest.getRemoteAddr()));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<JwtAuthenticationResponse> login(@RequestBody @Valid LoginRequest request) {
-        return ResponseEntity.ok(this.authenticationService.login(request));
+    public ResponseEntity<JwtAuthenticationResponse> login(
+        @RequestBody @Valid LoginRequest request,
+        HttpServletRequest httpRequest
+    ) {
+        return ResponseEntity.ok(this.authenticationService.login(request, httpRequest.getRemoteAddr()));
     }
 }
 
@@ -1,34 +1,71 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TransferMetrics;
 import com.example.bankcards.service.UserCardService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/cards")
 @RequiredArgsConstructor
 public class UserCardController {
+    private static final CacheControl LISTING_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private final UserCardService userCardService;
+    private final IdempotencyService idempotencyService;
+    private final TransferMetrics transferMetrics;
 
     @GetMapping
-    public ResponseEntity<Page<CardResponse>> getUserCards(
+    public ResponseEntity<PageResponse<CardResponse>> getUserCards(
         @AuthenticationPrincipal User user,
         @RequestParam(required = false) CardStatus status,
         @RequestParam(required = false, name = "search") String searchTerm,
-        Pageable pageable
+        Pageable pageable,
+        @RequestParam(defaultValue = "EXACT", name = "count") PageResponse.CountMode countMode,
+        WebRequest webRequest
     ) {
-        Page<CardResponse> cards = this.userCardService.getUserCards(user, status, searchTerm, pageable);
+        // Clients keep the page and revalidate it on every poll, an unchanged page costs one narrow query
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String eTag = this.userCardService.getUserCardsETag(user, status, searchTerm, pageable, countMode);
+            if (webRequest.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(LISTING_CACHE_CONTROL).build();
+            }
+        }
+
+        UserCardService.CardListing listing = this.userCardService.getUserCards(user, status, searchTerm, pageable, countMode);
+        return ResponseEntity.ok().eTag(listing.eTag()).cacheControl(LISTING_CACHE_CONTROL).body(listing.cards());
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<CardResponse>> scrollUserCards(
+        @AuthenticationPrincipal User user,
+        @RequestParam(required = false) CardStatus status,
+        @RequestParam(required = false, name = "search") String searchTerm,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        CursorPageResponse<CardResponse> cards = this.userCardService.scrollUserCards(user, status, searchTerm, cursor, size);
         return ResponseEntity.ok(cards);
     }
 
@@ -41,12 +78,63 @@ public class UserCardController {
         return ResponseEntity.ok(blockedCard);
     }
 
+    @GetMapping("/{id}/transactions")
+    public ResponseEntity<CursorPageResponse<CardTransactionResponse>> getCardTransactions(
+        @AuthenticationPrincipal User user,
+        @PathVariable UUID id,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        CursorPageResponse<CardTransactionResponse> transactions = this.userCardService.getCardTransactions(user, id, cursor, size);
+        return ResponseEntity.ok(transactions);
+    }
+
     @PostMapping("/transfer")
     public ResponseEntity<Void> transferMoney(
         @AuthenticationPrincipal User user,
+        @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
         @RequestBody @Valid TransferRequest request
     ) {
-        this.userCardService.transferMoney(user, request);
-        return ResponseEntity.ok().build();
+        Supplier<ResponseEntity<Void>> transfer = () -> {
+            this.userCardService.transferMoney(user, request);
+            return ResponseEntity.ok().build();
+        };
+
+        // Timed around the idempotent call, since with a key it is that call that retries conflicts
+        long startedAt = System.nanoTime();
+        ResponseEntity<Void> response;
+        try {
+            response = idempotencyKey == null
+                ? transfer.get()
+                : this.idempotencyService.execute("transfer", user.getId(), idempotencyKey, request, Void.class, transfer);
+        } catch (RuntimeException ex) {
+            this.transferMetrics.record(TransferMetrics.Endpoint.TRANSFER, ex, startedAt);
+            throw ex;
+        }
+        this.transferMetrics.record(TransferMetrics.Endpoint.TRANSFER, TransferMetrics.Outcome.SUCCESS, startedAt);
+        return response;
+    }
+
+    @PostMapping("/transfers:batch")
+    public ResponseEntity<BatchTransferResponse> transferMoneyBatch(
+        @AuthenticationPrincipal User user,
+        @RequestBody @Valid BatchTransferRequest request
+    ) {
+        long startedAt = System.nanoTime();
+        BatchTransferResponse response;
+        try {
+            response = this.userCardService.transferMoneyBatch(user, request);
+        } catch (RuntimeException ex) {
+            this.transferMetrics.record(TransferMetrics.Endpoint.TRANSFER_BATCH, ex, startedAt);
+            throw ex;
+        }
+        this.transferMetrics.record(
+            TransferMetrics.Endpoint.TRANSFER_BATCH,
+            response.committed() ? TransferMetrics.Outcome.SUCCESS : TransferMetrics.Outcome.REJECTED,
+            startedAt
+        );
+
+        HttpStatus status = response.committed() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY;
+        return new ResponseEntity<>(response, status);
     }
 }
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchTransferRequest(
+    @NotEmpty(message = "Transfers cannot be empty")
+    @Size(max = 100, message = "Batch cannot contain more than 100 transfers")
+    List<@Valid @NotNull(message = "Transfer cannot be null") TransferRequest> transfers,
+
+    @NotNull(message = "Mode cannot be null")
+    Mode mode
+) {
+    public enum Mode {
+        ALL_OR_NOTHING,
+        BEST_EFFORT
+    }
+}
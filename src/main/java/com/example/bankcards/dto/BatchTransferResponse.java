@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+public record BatchTransferResponse(
+    boolean committed,
+    List<TransferResult> results
+) {
+    public record TransferResult(
+        int index,
+        Status status,
+        String reason
+    ) {}
+
+    public enum Status {
+        APPLIED,
+        REJECTED,
+        ROLLED_BACK
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.bankcards.dto;
+
+public record CardImportResponse(
+    int importedCount
+) {}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public record CardSummaryResponse(
+    long cardCount,
+    BigDecimal balance,
+    Map<CardStatus, StatusSummary> byStatus
+) {
+    public record StatusSummary(
+        long cardCount,
+        BigDecimal balance
+    ) {}
+}
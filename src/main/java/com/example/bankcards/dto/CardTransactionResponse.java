@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.enums.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record CardTransactionResponse(
+    UUID id,
+    UUID transferId,
+    TransactionType type,
+    BigDecimal amount,
+    Instant createdAt
+) {
+    public static CardTransactionResponse fromTransaction(CardTransaction transaction) {
+        return new CardTransactionResponse(
+            transaction.getId(),
+            transaction.getTransferId(),
+            transaction.getType(),
+            transaction.getAmount(),
+            transaction.getCreatedAt()
+        );
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+public record CursorPageResponse<T>(
+    List<T> content,
+    int size,
+    boolean hasNext,
+    String nextCursor
+) {
+    public static final int MAX_SIZE = 100;
+
+    // One row more than requested tells whether there is a next page without counting
+    public static int fetchSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_SIZE);
+        }
+        return size + 1;
+    }
+
+    public static <E, T> CursorPageResponse<T> of(
+        List<E> rows,
+        int size,
+        Function<E, String> cursor,
+        Function<E, T> mapper
+    ) {
+        boolean hasNext = rows.size() > size;
+        List<E> page = hasNext ? rows.subList(0, size) : rows;
+        return new CursorPageResponse<>(
+            page.stream().map(mapper).toList(),
+            size,
+            hasNext,
+            hasNext ? cursor.apply(page.getLast()) : null
+        );
+    }
+}
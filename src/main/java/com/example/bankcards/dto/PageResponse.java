@@ -0,0 +1,72 @@
+package com.example.bankcards.dto;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+public record PageResponse<T>(
+    List<T> content,
+    PageMetadata page
+) {
+    public static <T> PageResponse<T> exact(Page<T> page) {
+        return new PageResponse<>(page.getContent(), new PageMetadata(
+            page.getSize(),
+            page.getNumber(),
+            page.getTotalElements(),
+            page.getTotalPages(),
+            page.hasNext(),
+            CountMode.EXACT
+        ));
+    }
+
+    public static <T> PageResponse<T> withoutCount(Slice<T> slice) {
+        return new PageResponse<>(slice.getContent(), new PageMetadata(
+            slice.getSize(),
+            slice.getNumber(),
+            null,
+            null,
+            slice.hasNext(),
+            CountMode.NONE
+        ));
+    }
+
+    // The estimate is only trusted where the slice cannot contradict it: the last page knows the real total.
+    // An empty page past the end only shows that the total is at most where it starts
+    public static <T> PageResponse<T> approximate(Slice<T> slice, long estimatedTotal) {
+        long seen = (long) slice.getNumber() * slice.getSize() + slice.getNumberOfElements();
+        long total;
+        if (slice.hasNext()) {
+            total = Math.max(estimatedTotal, seen + 1);
+        } else if (slice.getNumberOfElements() == 0 && slice.getNumber() > 0) {
+            total = Math.min(estimatedTotal, seen);
+        } else {
+            total = seen;
+        }
+
+        return new PageResponse<>(slice.getContent(), new PageMetadata(
+            slice.getSize(),
+            slice.getNumber(),
+            total,
+            (int) ((total + slice.getSize() - 1) / slice.getSize()),
+            slice.hasNext(),
+            CountMode.APPROXIMATE
+        ));
+    }
+
+    public record PageMetadata(
+        int size,
+        int number,
+        Long totalElements,
+        Integer totalPages,
+        boolean hasNext,
+        CountMode countMode
+    ) {
+    }
+
+    public enum CountMode {
+        EXACT,
+        NONE,
+        APPROXIMATE
+    }
+}
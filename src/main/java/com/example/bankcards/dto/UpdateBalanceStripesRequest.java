@@ -0,0 +1,12 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public record UpdateBalanceStripesRequest(
+    @NotNull(message = "Balance stripes cannot be null")
+    @Min(value = 0, message = "Balance stripes cannot be negative")
+    @Max(value = 64, message = "Balance stripes cannot exceed 64")
+    Integer balanceStripes
+) {}
@@ -1,11 +1,14 @@
 package com.example.bankcards.entity;
 
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.CardExpiry;
 import com.example.bankcards.util.CryptoConverter;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.UUID;
 
 @Getter
@@ -51,6 +54,13 @@ public class Card {
     )
     private String numberHash;
 
+    @Column(
+        name = "number_last4",
+        nullable = false,
+        length = 4
+    )
+    private String numberLast4;
+
     @Column(
         name = "expiry_date",
         nullable = false
@@ -58,6 +68,12 @@ public class Card {
     // MM/YY format
     private String expiryDate;
 
+    @Column(
+        name = "expires_at",
+        nullable = false
+    )
+    private LocalDate expiresAt;
+
     @Column
     @Enumerated(EnumType.STRING)
     private CardStatus status;
@@ -70,6 +86,19 @@ public class Card {
     )
     private BigDecimal balance;
 
+    // 0 keeps the balance in this row. Otherwise the balance lives in as many card_balance_stripes rows,
+    // so that concurrent transfers lock different rows, and this row's balance stays 0
+    @Column(
+        name = "balance_stripes",
+        nullable = false
+    )
+    @Builder.Default
+    private Integer balanceStripes = 0;
+
+    // Exact balance as of loading, striped or not. Not set on entities that were never loaded
+    @Formula("(CASE WHEN balance_stripes > 0 THEN (SELECT sum(s.balance) FROM card_balance_stripes s WHERE s.card_id = id) ELSE balance END)")
+    private BigDecimal totalBalance;
+
     @ManyToOne(
         fetch = FetchType.LAZY
     )
@@ -78,4 +107,9 @@ public class Card {
         nullable = false
     )
     private User holder;
+
+    @PrePersist
+    private void fillExpiresAt() {
+        expiresAt = CardExpiry.expiresAt(expiryDate);
+    }
 }
@@ -0,0 +1,66 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.TransactionType;
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Immutable
+@Table(
+    name = "card_transactions"
+)
+public class CardTransaction {
+    @Id
+    @GeneratedValue(
+        strategy = GenerationType.UUID
+    )
+    @Column(
+        name = "id",
+        nullable = false,
+        updatable = false
+    )
+    private UUID id;
+
+    @Column(
+        name = "transfer_id",
+        nullable = false
+    )
+    private UUID transferId;
+
+    @Column(
+        name = "card_id",
+        nullable = false
+    )
+    private UUID cardId;
+
+    @Column(
+        name = "type",
+        nullable = false
+    )
+    @Enumerated(EnumType.STRING)
+    private TransactionType type;
+
+    @Column(
+        name = "amount",
+        nullable = false,
+        precision = 19,
+        scale = 4
+    )
+    private BigDecimal amount;
+
+    // Partition key
+    @Column(
+        name = "created_at",
+        nullable = false
+    )
+    private Instant createdAt;
+}
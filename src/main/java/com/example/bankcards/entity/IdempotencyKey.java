@@ -0,0 +1,57 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(
+    name = "idempotency_keys"
+)
+public class IdempotencyKey {
+    // SHA-256 of user ID, scope and client key
+    @Id
+    @Column(
+        name = "key_hash",
+        nullable = false,
+        updatable = false,
+        length = 64
+    )
+    private String keyHash;
+
+    @Column(
+        name = "request_hash",
+        nullable = false,
+        length = 64
+    )
+    private String requestHash;
+
+    // Null while the first request is still running
+    @Column(
+        name = "response_status"
+    )
+    private Integer responseStatus;
+
+    @Column(
+        name = "response_body"
+    )
+    private String responseBody;
+
+    @Column(
+        name = "created_at",
+        nullable = false
+    )
+    private Instant createdAt;
+
+    @Column(
+        name = "expires_at",
+        nullable = false
+    )
+    private Instant expiresAt;
+}
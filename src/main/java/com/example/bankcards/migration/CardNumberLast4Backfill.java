@@ -0,0 +1,96 @@
+package com.example.bankcards.migration;
+
+import com.example.bankcards.util.CryptoConverter;
+import liquibase.change.CheckSum;
+import liquibase.change.custom.CustomChangeChecksum;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+// Card numbers are encrypted by the application, so the last four digits cannot be derived in plain SQL
+@Setter
+public class CardNumberLast4Backfill implements CustomTaskChange, CustomChangeChecksum {
+    private static final int BATCH_SIZE = 500;
+
+    private String cryptoSecret;
+
+    private int updatedRows;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        CryptoConverter cryptoConverter = new CryptoConverter(cryptoSecret);
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+
+        try (
+            PreparedStatement select = connection.prepareStatement(
+                "SELECT id, number FROM cards WHERE number_last4 IS NULL"
+            );
+            PreparedStatement update = connection.prepareStatement(
+                "UPDATE cards SET number_last4 = ? WHERE id = ?"
+            )
+        ) {
+            select.setFetchSize(BATCH_SIZE);
+
+            try (ResultSet rows = select.executeQuery()) {
+                int pending = 0;
+                while (rows.next()) {
+                    String number = cryptoConverter.convertToEntityAttribute(rows.getString("number"));
+                    update.setString(1, number.substring(12));
+                    update.setObject(2, rows.getObject("id", UUID.class));
+                    update.addBatch();
+
+                    if (++pending == BATCH_SIZE) {
+                        update.executeBatch();
+                        updatedRows += pending;
+                        pending = 0;
+                    }
+                }
+
+                if (pending > 0) {
+                    update.executeBatch();
+                    updatedRows += pending;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new CustomChangeException("Could not backfill card number last 4 digits", ex);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Backfilled last 4 digits for " + updatedRows + " card(s)";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (cryptoSecret == null || cryptoSecret.length() < 32) {
+            errors.addError("cryptoSecret must be at least 32 characters long");
+        }
+        return errors;
+    }
+
+    // The secret is a changelog parameter and must not affect the stored checksum
+    @Override
+    public CheckSum generateChecksum() {
+        return CheckSum.compute(getClass().getName());
+    }
+}
@@ -1,13 +1,217 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projections.BalanceChange;
+import com.example.bankcards.repository.projections.CardTransferState;
+import com.example.bankcards.repository.projections.CardView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card>, CardRepositoryCustom {
     boolean existsByNumberHash(String numberHash);
+
+    @Query("SELECT c.holder.id FROM Card c WHERE c.id = :id")
+    Optional<UUID> findHolderIdById(@Param("id") UUID id);
+
+    @EntityGraph(attributePaths = "holder")
+    Optional<Card> findWithHolderById(UUID id);
+
+    @Query("SELECT c.numberHash FROM Card c WHERE c.numberHash IN :numberHashes")
+    List<String> findExistingNumberHashes(@Param("numberHashes") Collection<String> numberHashes);
+
+    // Rows are locked in ID order so that concurrent transfers cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+
+    // Cards of other holders are left out before locking, so a request cannot lock them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids AND c.holder.id = :holderId ORDER BY c.id")
+    List<Card> findAllByIdAndHolderIdForUpdate(@Param("ids") Collection<UUID> ids, @Param("holderId") UUID holderId);
+
+    // One statement per transfer leg. An unstriped card is updated in its row, a striped one in a free stripe, and its
+    // row is only read, so that transfers on a hot card never meet on it. Nothing is returned when the card is not an
+    // active card of the holder, or is unstriped and lacks the amount
+    @Query(
+        value = """
+            WITH card AS (
+                SELECT balance_stripes FROM cards
+                WHERE id = :id AND user_id = :holderId AND status = 'ACTIVE'
+            ), unstriped AS (
+                UPDATE cards
+                SET balance = balance - :amount, version = version + 1
+                WHERE id = :id
+                    AND user_id = :holderId
+                    AND status = 'ACTIVE'
+                    AND balance_stripes = 0
+                    AND balance >= :amount
+                RETURNING id
+            ), striped AS (
+                UPDATE card_balance_stripes
+                SET balance = balance - :amount
+                WHERE card_id = :id AND stripe = (
+                    SELECT s.stripe FROM card_balance_stripes s, card
+                    WHERE s.card_id = :id AND card.balance_stripes > 0 AND s.balance >= :amount
+                    ORDER BY mod(s.stripe + :offset, card.balance_stripes)
+                    LIMIT 1
+                    FOR UPDATE OF s SKIP LOCKED
+                )
+                RETURNING card_id
+            )
+            SELECT balance_stripes AS stripes, EXISTS (SELECT 1 FROM unstriped) OR EXISTS (SELECT 1 FROM striped) AS applied
+            FROM card
+            WHERE balance_stripes > 0 OR EXISTS (SELECT 1 FROM unstriped)
+            """,
+        nativeQuery = true
+    )
+    Optional<BalanceChange> debit(
+        @Param("id") UUID id,
+        @Param("holderId") UUID holderId,
+        @Param("amount") BigDecimal amount,
+        @Param("offset") int offset
+    );
+
+    @Query(
+        value = """
+            WITH card AS (
+                SELECT balance_stripes FROM cards
+                WHERE id = :id AND user_id = :holderId AND status = 'ACTIVE'
+            ), unstriped AS (
+                UPDATE cards
+                SET balance = balance + :amount, version = version + 1
+                WHERE id = :id
+                    AND user_id = :holderId
+                    AND status = 'ACTIVE'
+                    AND balance_stripes = 0
+                RETURNING id
+            ), striped AS (
+                UPDATE card_balance_stripes
+                SET balance = balance + :amount
+                WHERE card_id = :id AND stripe = (
+                    SELECT s.stripe FROM card_balance_stripes s, card
+                    WHERE s.card_id = :id AND card.balance_stripes > 0
+                    ORDER BY mod(s.stripe + :offset, card.balance_stripes)
+                    LIMIT 1
+                    FOR UPDATE OF s SKIP LOCKED
+                )
+                RETURNING card_id
+            )
+            SELECT balance_stripes AS stripes, EXISTS (SELECT 1 FROM unstriped) OR EXISTS (SELECT 1 FROM striped) AS applied
+            FROM card
+            WHERE balance_stripes > 0 OR EXISTS (SELECT 1 FROM unstriped)
+            """,
+        nativeQuery = true
+    )
+    Optional<BalanceChange> credit(
+        @Param("id") UUID id,
+        @Param("holderId") UUID holderId,
+        @Param("amount") BigDecimal amount,
+        @Param("offset") int offset
+    );
+
+    // Read after the transfer holds its stripes, so a card blocked or deleted before that is not counted
+    @Query("""
+        SELECT count(c) FROM Card c
+        WHERE c.id IN :ids
+            AND c.holder.id = :holderId
+            AND c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE
+        """)
+    long countActiveByIdAndHolderId(@Param("ids") Collection<UUID> ids, @Param("holderId") UUID holderId);
+
+    // Read without a lock, to know which cards of a batch lock their stripes as well
+    @Query("SELECT c.id FROM Card c WHERE c.id IN :ids AND c.holder.id = :holderId AND c.balanceStripes > 0")
+    List<UUID> findStripedIdsByIdAndHolderId(@Param("ids") Collection<UUID> ids, @Param("holderId") UUID holderId);
+
+    // Stripes are locked as well, in stripe order, since transfers on a striped card hold a stripe and not the card row
+    @Query(
+        value = """
+            SELECT CASE WHEN balance_stripes > 0
+                THEN (SELECT coalesce(sum(s.balance), 0) FROM (
+                    SELECT balance FROM card_balance_stripes WHERE card_id = :id ORDER BY stripe FOR UPDATE
+                ) s)
+                ELSE balance END
+            FROM cards
+            WHERE id = :id
+            """,
+        nativeQuery = true
+    )
+    BigDecimal lockTotalBalanceById(@Param("id") UUID id);
+
+    @Query("""
+        SELECT new com.example.bankcards.repository.projections.CardTransferState(c.id, c.holder.id, c.status, c.totalBalance)
+        FROM Card c
+        WHERE c.id IN :ids
+        """)
+    List<CardTransferState> findTransferStates(@Param("ids") Collection<UUID> ids);
+
+    // Read through a forward-only cursor in chunks of the fetch size. Projections never enter the persistence context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        SELECT new com.example.bankcards.repository.projections.CardView(
+            c.id, c.numberLast4, c.expiryDate, c.status, c.totalBalance, h.id, h.username, c.version
+        )
+        FROM Card c JOIN c.holder h
+        ORDER BY c.id
+        """)
+    Stream<CardView> streamAllViews();
+
+    @Modifying
+    @Query(
+        value = "UPDATE card_balance_stripes SET balance = balance + :amount WHERE card_id = :id AND stripe = :stripe",
+        nativeQuery = true
+    )
+    int creditStripe(@Param("id") UUID id, @Param("stripe") int stripe, @Param("amount") BigDecimal amount);
+
+    // Stripes are locked in stripe order, so that consolidations cannot deadlock
+    @Query(
+        value = "SELECT balance FROM card_balance_stripes WHERE card_id = :id ORDER BY stripe FOR UPDATE",
+        nativeQuery = true
+    )
+    List<BigDecimal> lockStripeBalances(@Param("id") UUID id);
+
+    @Modifying
+    @Query(
+        value = """
+            UPDATE card_balance_stripes
+            SET balance = CASE WHEN stripe = 0 THEN :firstShare ELSE :share END
+            WHERE card_id = :id
+            """,
+        nativeQuery = true
+    )
+    int setStripeBalances(@Param("id") UUID id, @Param("firstShare") BigDecimal firstShare, @Param("share") BigDecimal share);
+
+    @Modifying
+    @Query(
+        value = """
+            INSERT INTO card_balance_stripes (card_id, stripe, balance)
+            SELECT :id, stripe, 0 FROM generate_series(0, :stripes - 1) AS stripe
+            """,
+        nativeQuery = true
+    )
+    int insertStripes(@Param("id") UUID id, @Param("stripes") int stripes);
+
+    @Modifying
+    @Query(
+        value = "DELETE FROM card_balance_stripes WHERE card_id = :id",
+        nativeQuery = true
+    )
+    int deleteStripes(@Param("id") UUID id);
 }
@@ -0,0 +1,25 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projections.CardVersion;
+import com.example.bankcards.repository.projections.CardView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface CardRepositoryCustom {
+    Page<CardView> findAllViews(Specification<Card> spec, Pageable pageable);
+
+    Slice<CardView> findViewSlice(Specification<Card> spec, Pageable pageable);
+
+    List<CardView> findViews(Specification<Card> spec, Sort sort, int limit);
+
+    // Same rows as findAllViews and findViewSlice, with only what tells whether a listed card changed
+    Page<CardVersion> findVersions(Specification<Card> spec, Pageable pageable);
+
+    Slice<CardVersion> findVersionSlice(Specification<Card> spec, Pageable pageable);
+}
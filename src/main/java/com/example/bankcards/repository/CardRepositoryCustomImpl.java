@@ -0,0 +1,141 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projections.CardVersion;
+import com.example.bankcards.repository.projections.CardView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+// Selects only the columns a card listing needs, so the encrypted number is never loaded or decrypted
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<CardView> findAllViews(Specification<Card> spec, Pageable pageable) {
+        return page(viewQuery(spec, pageable.getSort()), spec, pageable);
+    }
+
+    @Override
+    public Slice<CardView> findViewSlice(Specification<Card> spec, Pageable pageable) {
+        return slice(viewQuery(spec, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public List<CardView> findViews(Specification<Card> spec, Sort sort, int limit) {
+        return viewQuery(spec, sort)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    public Page<CardVersion> findVersions(Specification<Card> spec, Pageable pageable) {
+        return page(versionQuery(spec, pageable.getSort()), spec, pageable);
+    }
+
+    @Override
+    public Slice<CardVersion> findVersionSlice(Specification<Card> spec, Pageable pageable) {
+        return slice(versionQuery(spec, pageable.getSort()), pageable);
+    }
+
+    private <T> Page<T> page(TypedQuery<T> query, Specification<Card> spec, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    private <T> Slice<T> slice(TypedQuery<T> query, Pageable pageable) {
+        List<T> rows = query
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize() + 1)
+            .getResultList();
+
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    private TypedQuery<CardView> viewQuery(Specification<Card> spec, Sort sort) {
+        return query(CardView.class, spec, sort, (root, criteriaBuilder) -> {
+            Join<Card, User> holder = root.join("holder");
+            return criteriaBuilder.construct(
+                CardView.class,
+                root.get("id"),
+                root.get("numberLast4"),
+                root.get("expiryDate"),
+                root.get("status"),
+                root.get("totalBalance"),
+                holder.get("id"),
+                holder.get("username"),
+                root.get("version")
+            );
+        });
+    }
+
+    // No join with users: a holder's username never changes, so it cannot make a listed card differ
+    private TypedQuery<CardVersion> versionQuery(Specification<Card> spec, Sort sort) {
+        return query(CardVersion.class, spec, sort, (root, criteriaBuilder) -> criteriaBuilder.construct(
+            CardVersion.class,
+            root.get("id"),
+            root.get("version"),
+            root.get("totalBalance")
+        ));
+    }
+
+    private <T> TypedQuery<T> query(
+        Class<T> type,
+        Specification<Card> spec,
+        Sort sort,
+        BiFunction<Root<Card>, CriteriaBuilder, Selection<T>> selection
+    ) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+        Root<Card> root = query.from(Card.class);
+
+        query.select(selection.apply(root, criteriaBuilder));
+
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Card> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Card> root = query.from(Card.class);
+
+        query.select(criteriaBuilder.count(root));
+
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, UUID> {
+    @Query(
+        value = """
+            SELECT * FROM card_transactions
+            WHERE card_id = :cardId
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """,
+        nativeQuery = true
+    )
+    List<CardTransaction> findLatestByCardId(@Param("cardId") UUID cardId, @Param("limit") int limit);
+
+    // Row comparison keeps the keyset condition on idx_card_transactions_card_id_created_at_id
+    @Query(
+        value = """
+            SELECT * FROM card_transactions
+            WHERE card_id = :cardId AND (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """,
+        nativeQuery = true
+    )
+    List<CardTransaction> findByCardIdBefore(
+        @Param("cardId") UUID cardId,
+        @Param("createdAt") Instant createdAt,
+        @Param("id") UUID id,
+        @Param("limit") int limit
+    );
+}
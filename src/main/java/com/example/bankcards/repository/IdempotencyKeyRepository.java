@@ -0,0 +1,64 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    // Returns 0 when the key is already held by a live request, an expired key is taken over
+    @Transactional
+    @Modifying
+    @Query(
+        value = """
+            INSERT INTO idempotency_keys (key_hash, request_hash, created_at, expires_at)
+            VALUES (:keyHash, :requestHash, :now, :expiresAt)
+            ON CONFLICT (key_hash) DO UPDATE
+            SET request_hash = EXCLUDED.request_hash,
+                response_status = NULL,
+                response_body = NULL,
+                created_at = EXCLUDED.created_at,
+                expires_at = EXCLUDED.expires_at
+            WHERE idempotency_keys.expires_at < :now
+            """,
+        nativeQuery = true
+    )
+    int claim(
+        @Param("keyHash") String keyHash,
+        @Param("requestHash") String requestHash,
+        @Param("now") Instant now,
+        @Param("expiresAt") Instant expiresAt
+    );
+
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE IdempotencyKey k
+        SET k.responseStatus = :responseStatus, k.responseBody = :responseBody
+        WHERE k.keyHash = :keyHash
+        """)
+    int complete(
+        @Param("keyHash") String keyHash,
+        @Param("responseStatus") int responseStatus,
+        @Param("responseBody") String responseBody
+    );
+
+    @Transactional
+    @Modifying
+    @Query(
+        value = """
+            DELETE FROM idempotency_keys
+            WHERE ctid = ANY (ARRAY(
+                SELECT ctid FROM idempotency_keys WHERE expires_at < :now LIMIT :batchSize
+            ))
+            """,
+        nativeQuery = true
+    )
+    int deleteExpired(@Param("now") Instant now, @Param("batchSize") int batchSize);
+}
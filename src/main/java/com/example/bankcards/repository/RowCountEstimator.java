@@ -0,0 +1,40 @@
+package com.example.bankcards.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+
+// Planner statistics instead of count(*), refreshed by autovacuum/ANALYZE and cached on top of that
+@Repository
+public class RowCountEstimator {
+    private final EntityManager entityManager;
+    private final Cache<String, Long> estimates;
+
+    public RowCountEstimator(
+        EntityManager entityManager,
+        @Value("${pagination.approximate-count-ttl}") Duration ttl
+    ) {
+        this.entityManager = entityManager;
+        this.estimates = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    public long estimate(String table) {
+        return estimates.get(table, this::queryEstimate);
+    }
+
+    private long queryEstimate(String table) {
+        Number reltuples = (Number) entityManager
+            .createNativeQuery("SELECT reltuples FROM pg_class WHERE oid = to_regclass(:table)")
+            .setParameter("table", table)
+            .getSingleResult();
+
+        // Tables that have never been analyzed report -1
+        return Math.max(reltuples.longValue(), 0);
+    }
+}
@@ -1,13 +1,38 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projections.UserRoleRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUsername(String username);
+
+    Slice<User> findAllBy(Pageable pageable);
+
+    List<User> findAllByOrderByUsernameAsc(Limit limit);
+
+    List<User> findByUsernameGreaterThanOrderByUsernameAsc(String username, Limit limit);
+
+    // Ordered by user, so that the roles of one user come in adjacent rows
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        SELECT new com.example.bankcards.repository.projections.UserRoleRow(u.id, u.username, r.name)
+        FROM User u LEFT JOIN u.roles r
+        ORDER BY u.id
+        """)
+    Stream<UserRoleRow> streamAllWithRoles();
 }
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository.projections;
+
+// Outcome of one transfer leg. A striped card that is not applied had no free stripe that could take the amount
+public record BalanceChange(
+    int stripes,
+    boolean applied
+) {}
@@ -0,0 +1,13 @@
+package com.example.bankcards.repository.projections;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record CardTransferState(
+    UUID id,
+    UUID holderId,
+    CardStatus status,
+    BigDecimal balance
+) {}
@@ -0,0 +1,10 @@
+package com.example.bankcards.repository.projections;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record CardVersion(
+    UUID id,
+    Long version,
+    BigDecimal balance
+) {}
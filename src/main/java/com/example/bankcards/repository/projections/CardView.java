@@ -0,0 +1,18 @@
+package com.example.bankcards.repository.projections;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record CardView(
+    UUID id,
+    String numberLast4,
+    String expiryDate,
+    CardStatus status,
+    BigDecimal balance,
+    UUID holderId,
+    String holderUsername,
+    Long version
+) {
+}
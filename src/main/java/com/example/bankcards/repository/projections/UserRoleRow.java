@@ -0,0 +1,10 @@
+package com.example.bankcards.repository.projections;
+
+import java.util.UUID;
+
+// One row per role of a user, or a single row with a null role for a user without roles
+public record UserRoleRow(
+    UUID id,
+    String username,
+    String role
+) {}
@@ -17,8 +17,13 @@ public class CardSpecifications {
             criteriaBuilder.equal(root.get("status"), status);
     }
 
-    public static Specification<Card> numberEndsWith(String lastFourDigits) {
+    public static Specification<Card> hasIdAfter(UUID id) {
         return (root, query, criteriaBuilder) ->
-            criteriaBuilder.like(root.get("number"), "%" + lastFourDigits);
+            criteriaBuilder.greaterThan(root.get("id"), id);
+    }
+
+    public static Specification<Card> hasNumberLast4(String lastFourDigits) {
+        return (root, query, criteriaBuilder) ->
+            criteriaBuilder.equal(root.get("numberLast4"), lastFourDigits);
     }
 }
@@ -1,15 +1,18 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
-public class ApplicationUserDetailsService implements UserDetailsService {
+public class ApplicationUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
 
     @Override
@@ -17,4 +20,15 @@ public class ApplicationUserDetailsService implements UserDetailsService {
         return userRepository.findByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("User with username" + username + "not found"));
     }
+
+    // Called by the authentication provider after a successful login when the stored hash is weaker than the
+    // configured encoder. The update also evicts the user from PrincipalCache once it commits
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User storedUser = userRepository.findByUsername(user.getUsername())
+            .orElseThrow(() -> new UsernameNotFoundException("User with username" + user.getUsername() + "not found"));
+        storedUser.setPassword(newPassword);
+        return storedUser;
+    }
 }
@@ -1,11 +1,12 @@
 package com.example.bankcards.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -15,12 +16,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final UserDetailsService userDetailsService;
     private final JwtService jwtService;
+    private final PrincipalCache principalCache;
+
+    private final Timer validJwtTimer;
+    private final Timer invalidJwtTimer;
+    private final Timer principalLookupTimer;
+
+    public JwtAuthenticationFilter(
+        UserDetailsService userDetailsService,
+        JwtService jwtService,
+        PrincipalCache principalCache,
+        MeterRegistry meterRegistry
+    ) {
+        this.userDetailsService = userDetailsService;
+        this.jwtService = jwtService;
+        this.principalCache = principalCache;
+        this.validJwtTimer = jwtTimer(meterRegistry, "valid");
+        this.invalidJwtTimer = jwtTimer(meterRegistry, "invalid");
+        this.principalLookupTimer = Timer.builder("security.principal.lookup")
+            .description("Time to resolve the authenticated user, cache hits included")
+            .register(meterRegistry);
+    }
 
     @Override
     protected void doFilterInternal(
@@ -36,22 +58,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String jwt = authHeader.substring(7);
-        String username = this.jwtService.extractUsername(jwt);
+        long startedAt = System.nanoTime();
+        String username;
+        try {
+            username = this.jwtService.verify(jwt).subject();
+        } catch (RuntimeException ex) {
+            this.invalidJwtTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+        this.validJwtTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-            if (this.jwtService.isJwtValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                    userDetails,
-                    null,
-                    userDetails.getAuthorities()
-                );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            startedAt = System.nanoTime();
+            UserDetails userDetails = this.principalCache.get(username, this.userDetailsService::loadUserByUsername);
+            this.principalLookupTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+            );
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private static Timer jwtTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("security.jwt.verify")
+            .description("JWT parsing and signature verification time")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
 }
@@ -1,73 +1,81 @@
 package com.example.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Function;
+import java.util.List;
 
 @Service
 public class JwtService {
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private static final String ROLES_CLAIM = "roles";
 
-    @Value("${jwt.expiration}")
-    private Long jwtExpiration;
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+    private final long jwtExpiration;
+    private final Cache<String, VerifiedJwt> verifiedJwts;
 
-    public String generateJwt(UserDetails userDetails) {
-        return generateJwt(userDetails, new HashMap<>());
-    }
-
-    public String extractUsername(String jwt) {
-        return extractClaim(jwt, Claims::getSubject);
-    }
-
-    public boolean isJwtValid(String jwt, UserDetails userDetails) {
-        String username = extractUsername(jwt);
-        return (username.equals(userDetails.getUsername())) && !isJwtExpired(jwt);
-    }
-
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    public JwtService(
+        @Value("${jwt.secret}") String jwtSecret,
+        @Value("${jwt.expiration}") long jwtExpiration,
+        @Value("${jwt.verified-cache-size}") long verifiedCacheSize
+    ) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.jwtParser = Jwts.parser()
+            .verifyWith(signingKey)
+            .build();
+        this.jwtExpiration = jwtExpiration;
+        // Keyed by the whole token, a signature alone does not vouch for a different payload
+        this.verifiedJwts = verifiedCacheSize > 0
+            ? Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(Expiry.<String, VerifiedJwt>creating(
+                    (jwt, verified) -> Duration.between(Instant.now(), verified.expiresAt())
+                ))
+                .build()
+            : null;
     }
 
-    private String generateJwt(UserDetails userDetails, Map<String, Object> extraClaims) {
+    public String generateJwt(UserDetails userDetails) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
             .subject(userDetails.getUsername())
-            .claims(extraClaims)
-            .issuedAt(new Date(System.currentTimeMillis()))
-            .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-            .signWith(getSigningKey())
+            .claim(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList())
+            .issuedAt(new Date(now))
+            .expiration(new Date(now + jwtExpiration))
+            .signWith(signingKey)
             .compact();
     }
 
-    private Claims extractAllClaims(String jwt) {
-        return Jwts.parser()
-            .verifyWith(getSigningKey())
-            .build()
-            .parseSignedClaims(jwt)
-            .getPayload();
-    }
-
-    private <T> T extractClaim(String jwt, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(jwt);
-        return claimsResolver.apply(claims);
-    }
-
-    private Date extractExpiration(String jwt) {
-        return extractClaim(jwt, Claims::getExpiration);
+    public VerifiedJwt verify(String jwt) {
+        if (verifiedJwts == null) {
+            return parse(jwt);
+        }
+        return verifiedJwts.get(jwt, this::parse);
     }
 
-    private boolean isJwtExpired(String jwt) {
-        return extractExpiration(jwt).before(new Date());
+    private VerifiedJwt parse(String jwt) {
+        Claims claims = jwtParser.parseSignedClaims(jwt).getPayload();
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        return new VerifiedJwt(
+            claims.getSubject(),
+            claims.getExpiration().toInstant(),
+            roles == null ? List.of() : roles.stream().map(String::valueOf).toList()
+        );
     }
 }
@@ -0,0 +1,32 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// One bucket per key, so a key never takes tokens from another. A bucket untouched until it refilled is dropped,
+// as it is no different from a new one, and the number of buckets is bounded
+public class KeyedTokenBuckets extends TokenBuckets {
+    private final Cache<String, AtomicLong> buckets;
+
+    public KeyedTokenBuckets(long maximumSize, int capacity, long intervalNanos, LongSupplier clock) {
+        super(capacity, intervalNanos, clock);
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterAccess(Duration.ofNanos(refillNanos()))
+            .build();
+    }
+
+    @Override
+    protected AtomicLong bucket(String key) {
+        return buckets.get(key, ignored -> new AtomicLong());
+    }
+
+    @Override
+    protected AtomicLong existingBucket(String key) {
+        return buckets.getIfPresent(key);
+    }
+}
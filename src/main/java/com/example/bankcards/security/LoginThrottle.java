@@ -0,0 +1,74 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Every attempt from an address takes a token, so one client cannot keep the hashing pool busy. Only failed
+// attempts take a username token, so guessing a password locks the account briefly but logging in does not.
+// Username buckets are exact, since the lockout refuses even the right password: failures for one name must
+// never lock out another
+@Component
+public class LoginThrottle {
+    private final boolean enabled;
+    private final StripedTokenBuckets addresses;
+    private final KeyedTokenBuckets usernames;
+    private final Counter addressRejections;
+    private final Counter usernameRejections;
+
+    public LoginThrottle(
+        @Value("${security.login-throttle.enabled}") boolean enabled,
+        @Value("${security.login-throttle.per-address.stripes}") int addressStripes,
+        @Value("${security.login-throttle.per-address.capacity}") int addressCapacity,
+        @Value("${security.login-throttle.per-address.refill-interval}") Duration addressRefillInterval,
+        @Value("${security.login-throttle.per-username.maximum-size}") long usernameMaximumSize,
+        @Value("${security.login-throttle.per-username.capacity}") int usernameCapacity,
+        @Value("${security.login-throttle.per-username.refill-interval}") Duration usernameRefillInterval,
+        MeterRegistry meterRegistry
+    ) {
+        this.enabled = enabled;
+        this.addresses = new StripedTokenBuckets(addressStripes, addressCapacity, addressRefillInterval.toNanos(), System::nanoTime);
+        this.usernames = new KeyedTokenBuckets(usernameMaximumSize, usernameCapacity, usernameRefillInterval.toNanos(), System::nanoTime);
+        this.addressRejections = rejections(meterRegistry, "address");
+        this.usernameRejections = rejections(meterRegistry, "username");
+    }
+
+    public void checkAddress(String address) {
+        if (!enabled) {
+            return;
+        }
+        long delay = addresses.tryAcquire(address);
+        if (delay > 0) {
+            addressRejections.increment();
+            throw new TooManyRequestsException("Too many authentication attempts from this address", Duration.ofNanos(delay));
+        }
+    }
+
+    public void checkUsername(String username) {
+        if (!enabled) {
+            return;
+        }
+        long delay = usernames.delay(username);
+        if (delay > 0) {
+            usernameRejections.increment();
+            throw new TooManyRequestsException("Too many failed login attempts for this user", Duration.ofNanos(delay));
+        }
+    }
+
+    public void recordFailure(String username) {
+        if (enabled) {
+            usernames.tryAcquire(username);
+        }
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("security.login.throttled")
+            .description("Authentication attempts rejected by the login throttle")
+            .tag("key", key)
+            .register(meterRegistry);
+    }
+}
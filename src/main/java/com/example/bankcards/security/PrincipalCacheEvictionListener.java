@@ -0,0 +1,34 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Evicts after commit, otherwise a concurrent request could cache the old row again before the change is visible
+@Component
+@RequiredArgsConstructor
+public class PrincipalCacheEvictionListener {
+    private final PrincipalCache principalCache;
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String username = user.getUsername();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            principalCache.evict(username);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                principalCache.evict(username);
+            }
+        });
+    }
+}
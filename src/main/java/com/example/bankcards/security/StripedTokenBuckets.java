@@ -0,0 +1,40 @@
+package com.example.bankcards.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Keys are hashed onto a fixed number of stripes instead of being stored, so memory stays constant however many
+// distinct keys show up. Keys that share a stripe share its bucket, so this only suits limits where a stricter
+// bucket costs little, like attempts per address. It must not lock anyone out
+public class StripedTokenBuckets extends TokenBuckets {
+    private final AtomicLong[] arrivalTimes;
+    private final int mask;
+
+    public StripedTokenBuckets(int stripes, int capacity, long intervalNanos, LongSupplier clock) {
+        super(capacity, intervalNanos, clock);
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of stripes must be a power of two");
+        }
+
+        this.arrivalTimes = new AtomicLong[stripes];
+        for (int i = 0; i < stripes; i++) {
+            arrivalTimes[i] = new AtomicLong();
+        }
+        this.mask = stripes - 1;
+    }
+
+    @Override
+    protected AtomicLong bucket(String key) {
+        return arrivalTimes[stripe(key)];
+    }
+
+    @Override
+    protected AtomicLong existingBucket(String key) {
+        return arrivalTimes[stripe(key)];
+    }
+
+    private int stripe(String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
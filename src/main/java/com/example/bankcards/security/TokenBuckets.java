@@ -0,0 +1,65 @@
+package com.example.bankcards.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token buckets in the GCRA form: each bucket is a single "theoretical arrival time", so taking a token is one CAS.
+// Subclasses decide which bucket a key takes its tokens from
+public abstract class TokenBuckets {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier clock;
+    private final long epoch;
+
+    protected TokenBuckets(int capacity, long intervalNanos, LongSupplier clock) {
+        if (capacity < 1 || intervalNanos < 1) {
+            throw new IllegalArgumentException("Capacity and refill interval must be positive");
+        }
+
+        this.intervalNanos = intervalNanos;
+        this.toleranceNanos = (capacity - 1) * intervalNanos;
+        this.clock = clock;
+        // Every bucket starts full: a zero arrival time already lies a full burst in the past
+        this.epoch = clock.getAsLong() - capacity * intervalNanos;
+    }
+
+    // Takes a token, returns 0 on success or the nanoseconds until one becomes available
+    public long tryAcquire(String key) {
+        AtomicLong bucket = bucket(key);
+
+        while (true) {
+            long now = clock.getAsLong() - epoch;
+            long arrivalTime = bucket.get();
+            long start = Math.max(arrivalTime, now);
+
+            long delay = start - now - toleranceNanos;
+            if (delay > 0) {
+                return delay;
+            }
+            if (bucket.compareAndSet(arrivalTime, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // Same answer as tryAcquire without taking the token
+    public long delay(String key) {
+        AtomicLong bucket = existingBucket(key);
+        if (bucket == null) {
+            return 0;
+        }
+        long now = clock.getAsLong() - epoch;
+        return Math.max(0, bucket.get() - now - toleranceNanos);
+    }
+
+    // Time for an untouched bucket to fill up, after which it is no different from a new one
+    protected long refillNanos() {
+        return toleranceNanos + intervalNanos;
+    }
+
+    // The key's bucket, a new full one if it has none
+    protected abstract AtomicLong bucket(String key);
+
+    // The key's bucket, or null when it has none, which counts as full
+    protected abstract AtomicLong existingBucket(String key);
+}
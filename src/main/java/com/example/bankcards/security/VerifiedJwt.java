@@ -0,0 +1,11 @@
+package com.example.bankcards.security;
+
+import java.time.Instant;
+import java.util.List;
+
+public record VerifiedJwt(
+    String subject,
+    Instant expiresAt,
+    List<String> roles
+) {
+}
@@ -1,41 +1,116 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CardImportResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSummaryResponse;
 import com.example.bankcards.dto.CreateCardRequest;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
 import com.example.bankcards.dto.UpdateCardStatusRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.RowCountEstimator;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.projections.CardView;
+import com.example.bankcards.repository.specifications.CardSpecifications;
 import com.example.bankcards.util.CardMapper;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.ExportWriter;
+import com.example.bankcards.util.Hashing;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HexFormat;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AdminCardService {
+    private static final List<String> EXPORT_CSV_HEADER = List.of(
+        "id", "number", "expiryDate", "status", "balance", "holderId", "holderUsername"
+    );
+
     private final UserRepository userRepository;
     private final CardRepository cardRepository;
     private final CardMapper cardMapper;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final RowCountEstimator rowCountEstimator;
+    private final StripedBalanceService stripedBalanceService;
+    private final ExportWriter exportWriter;
+    private final CardSummaryService cardSummaryService;
 
     @Value("${crypto.secret}")
     private String cryptoSecret;
 
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int importChunkSize;
+
+    @Transactional(readOnly = true)
+    public PageResponse<CardResponse> getAllCards(Pageable pageable, PageResponse.CountMode countMode) {
+        Specification<Card> spec = Specification.unrestricted();
+
+        return switch (countMode) {
+            case EXACT -> PageResponse.exact(
+                cardRepository.findAllViews(spec, pageable).map(cardMapper::mapToCardResponse)
+            );
+            case NONE -> PageResponse.withoutCount(
+                cardRepository.findViewSlice(spec, pageable).map(cardMapper::mapToCardResponse)
+            );
+            case APPROXIMATE -> PageResponse.approximate(
+                cardRepository.findViewSlice(spec, pageable).map(cardMapper::mapToCardResponse),
+                rowCountEstimator.estimate("cards")
+            );
+        };
+    }
+
     @Transactional(readOnly = true)
-    public Page<CardResponse> getAllCards(Pageable pageable) {
-        Page<Card> cards = cardRepository.findAll(pageable);
-        return cards.map(cardMapper::mapToCardResponse);
+    public CursorPageResponse<CardResponse> scrollAllCards(String cursor, int size) {
+        Specification<Card> spec = cursor == null
+            ? Specification.unrestricted()
+            : CardSpecifications.hasIdAfter(CursorCodec.decodeUuid(cursor));
+
+        List<CardView> cards = cardRepository.findViews(spec, Sort.by("id"), CursorPageResponse.fetchSize(size));
+        return CursorPageResponse.of(cards, size, card -> CursorCodec.encode(card.id()), cardMapper::mapToCardResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportCards(ExportFormat format, OutputStream output) throws IOException {
+        try (Stream<CardResponse> cards = cardRepository.streamAllViews().map(cardMapper::mapToCardResponse)) {
+            switch (format) {
+                case NDJSON -> exportWriter.writeNdjson(cards, CardResponse.class, output);
+                case CSV -> exportWriter.writeCsv(cards, EXPORT_CSV_HEADER, card -> Arrays.asList(
+                    card.id(),
+                    card.number(),
+                    card.expiryDate(),
+                    card.status(),
+                    card.balance(),
+                    card.holder().id(),
+                    card.holder().username()
+                ), output);
+            }
+        }
+    }
+
+    public CardSummaryResponse getCardSummary() {
+        return cardSummaryService.getGlobalSummary();
     }
 
     @Transactional
@@ -52,6 +127,7 @@ public class AdminCardService {
         Card newCard = Card.builder()
             .number(request.number())
             .numberHash(numberHash)
+            .numberLast4(request.number().substring(12))
             .expiryDate(request.expiryDate())
             .status(CardStatus.ACTIVE)
             .balance(request.initialBalance())
@@ -59,41 +135,140 @@ public class AdminCardService {
             .build();
 
         Card savedCard = cardRepository.save(newCard);
+        cardSummaryService.cardCreated(savedCard);
 
         return cardMapper.mapToCardResponse(savedCard);
     }
 
+    @Transactional
+    public CardImportResponse importCards(Iterator<CreateCardRequest> requests) {
+        List<CreateCardRequest> chunk = new ArrayList<>(importChunkSize);
+        CardSummaryService.CreatedCards createdCards = cardSummaryService.createdCards();
+        int importedCount = 0;
+
+        while (requests.hasNext()) {
+            chunk.add(validate(requests.next(), importedCount + chunk.size()));
+
+            if (chunk.size() == importChunkSize) {
+                importChunk(chunk, importedCount, createdCards);
+                importedCount += chunk.size();
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, importedCount, createdCards);
+            importedCount += chunk.size();
+        }
+        createdCards.apply();
+
+        return new CardImportResponse(importedCount);
+    }
+
     @Transactional
     public CardResponse updateCardStatus(UUID id, UpdateCardStatusRequest request) {
-        Card card = cardRepository.findById(id)
+        Card card = cardRepository.findWithHolderById(id)
             .orElseThrow(() -> new EntityNotFoundException("Card with ID " + id + " not found"));
 
         if (request.newStatus().equals(CardStatus.EXPIRED)) {
             throw new IllegalArgumentException("Cannot expire card manually");
         }
 
+        CardStatus previousStatus = card.getStatus();
         card.setStatus(request.newStatus());
         Card updatedCard = cardRepository.save(card);
+        cardSummaryService.statusChanged(updatedCard, previousStatus);
+
+        return cardMapper.mapToCardResponse(updatedCard);
+    }
+
+    @Transactional
+    public CardResponse updateBalanceStripes(UUID id, UpdateBalanceStripesRequest request) {
+        Card card = cardRepository.findAllByIdForUpdate(List.of(id)).stream()
+            .findFirst()
+            .orElseThrow(() -> new EntityNotFoundException("Card with ID " + id + " not found"));
+
+        stripedBalanceService.resize(card, request.balanceStripes());
+        Card updatedCard = cardRepository.save(card);
 
         return cardMapper.mapToCardResponse(updatedCard);
     }
 
     @Transactional
     public void deleteCard(UUID id) {
-        if (!cardRepository.existsById(id)) {
-            throw new EntityNotFoundException("Card with ID " + id + " not found");
+        Card card = cardRepository.findAllByIdForUpdate(List.of(id)).stream()
+            .findFirst()
+            .orElseThrow(() -> new EntityNotFoundException("Card with ID " + id + " not found"));
+
+        cardSummaryService.cardDeleted(card);
+        cardRepository.delete(card);
+    }
+
+    // One user lookup and one duplicate check per chunk, so that inserts are not split by queries
+    private void importChunk(List<CreateCardRequest> chunk, int firstRow, CardSummaryService.CreatedCards createdCards) {
+        Set<UUID> userIds = chunk.stream()
+            .map(request -> UUID.fromString(request.userId()))
+            .collect(Collectors.toSet());
+        Map<UUID, User> holders = userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<String> numberHashes = chunk.stream()
+            .map(request -> generateHash(request.number()))
+            .toList();
+        Set<String> takenHashes = new HashSet<>(cardRepository.findExistingNumberHashes(numberHashes));
+
+        List<Card> cards = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            CreateCardRequest request = chunk.get(i);
+            int row = firstRow + i;
+
+            User holder = holders.get(UUID.fromString(request.userId()));
+            if (holder == null) {
+                throw new EntityNotFoundException("Row " + row + ": user with ID " + request.userId() + " not found");
+            }
+
+            if (!takenHashes.add(numberHashes.get(i))) {
+                throw new IllegalArgumentException("Row " + row + ": number " + request.number() + " is already taken");
+            }
+
+            cards.add(Card.builder()
+                .number(request.number())
+                .numberHash(numberHashes.get(i))
+                .numberLast4(request.number().substring(12))
+                .expiryDate(request.expiryDate())
+                .status(CardStatus.ACTIVE)
+                .balance(request.initialBalance())
+                .holder(holder)
+                .build());
         }
-        cardRepository.deleteById(id);
+
+        cardRepository.saveAll(cards);
+        cards.forEach(createdCards::add);
+        cardRepository.flush();
+        entityManager.clear();
     }
 
-    private String generateHash(String data) {
+    private CreateCardRequest validate(CreateCardRequest request, int row) {
+        Set<ConstraintViolation<CreateCardRequest>> violations = validator.validate(request);
+
+        if (!violations.isEmpty()) {
+            String description = violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+            throw new IllegalArgumentException("Row " + row + ": " + description);
+        }
+
         try {
-            String dataWithPepper = data + cryptoSecret;
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(dataWithPepper.getBytes());
-            return HexFormat.of().formatHex(hashBytes);
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException("Could not generate hash", ex);
+            UUID.fromString(request.userId());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Row " + row + ": invalid user ID " + request.userId());
         }
+
+        return request;
+    }
+
+    private String generateHash(String data) {
+        return Hashing.sha256Hex(data + cryptoSecret);
     }
 }
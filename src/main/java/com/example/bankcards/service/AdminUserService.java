@@ -1,22 +1,124 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.ExportFormat;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RowCountEstimator;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.projections.UserRoleRow;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.ExportWriter;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 @Service
 @RequiredArgsConstructor
 public class AdminUserService {
+    private static final List<String> EXPORT_CSV_HEADER = List.of("id", "username", "roles");
+
     private final UserRepository userRepository;
+    private final RowCountEstimator rowCountEstimator;
+    private final ExportWriter exportWriter;
+    private final CardSummaryService cardSummaryService;
+
+    @Transactional(readOnly = true)
+    public PageResponse<UserResponse> getAllUsers(Pageable pageable, PageResponse.CountMode countMode) {
+        return switch (countMode) {
+            case EXACT -> PageResponse.exact(
+                userRepository.findAll(pageable).map(UserResponse::fromUser)
+            );
+            case NONE -> PageResponse.withoutCount(
+                userRepository.findAllBy(pageable).map(UserResponse::fromUser)
+            );
+            case APPROXIMATE -> PageResponse.approximate(
+                userRepository.findAllBy(pageable).map(UserResponse::fromUser),
+                rowCountEstimator.estimate("users")
+            );
+        };
+    }
 
     @Transactional(readOnly = true)
-    public Page<UserResponse> getAllUsers(Pageable pageable) {
-        Page<User> users = userRepository.findAll(pageable);
-        return users.map(UserResponse::fromUser);
+    public CursorPageResponse<UserResponse> scrollAllUsers(String cursor, int size) {
+        Limit limit = Limit.of(CursorPageResponse.fetchSize(size));
+        List<User> users = cursor == null
+            ? userRepository.findAllByOrderByUsernameAsc(limit)
+            : userRepository.findByUsernameGreaterThanOrderByUsernameAsc(CursorCodec.decodeString(cursor), limit);
+
+        return CursorPageResponse.of(users, size, user -> CursorCodec.encode(user.getUsername()), UserResponse::fromUser);
+    }
+
+    public CardSummaryResponse getCardSummary(UUID id) {
+        if (!userRepository.existsById(id)) {
+            throw new EntityNotFoundException("User with ID " + id + " not found");
+        }
+        return cardSummaryService.getUserSummary(id);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUsers(ExportFormat format, OutputStream output) throws IOException {
+        try (Stream<UserRoleRow> rows = userRepository.streamAllWithRoles()) {
+            Stream<UserResponse> users = groupByUser(rows);
+            switch (format) {
+                case NDJSON -> exportWriter.writeNdjson(users, UserResponse.class, output);
+                case CSV -> exportWriter.writeCsv(users, EXPORT_CSV_HEADER, user -> List.of(
+                    user.id(),
+                    user.username(),
+                    String.join(";", new TreeSet<>(user.roles()))
+                ), output);
+            }
+        }
+    }
+
+    // Only the user being assembled is held, the rows of the next one are read when it is requested
+    private static Stream<UserResponse> groupByUser(Stream<UserRoleRow> rows) {
+        Iterator<UserRoleRow> iterator = rows.iterator();
+        Iterator<UserResponse> users = new Iterator<>() {
+            private UserRoleRow pending = iterator.hasNext() ? iterator.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            @Override
+            public UserResponse next() {
+                if (pending == null) {
+                    throw new NoSuchElementException();
+                }
+
+                UserRoleRow first = pending;
+                Set<String> roles = new HashSet<>();
+                while (pending != null && pending.id().equals(first.id())) {
+                    if (pending.role() != null) {
+                        roles.add(pending.role());
+                    }
+                    pending = iterator.hasNext() ? iterator.next() : null;
+                }
+                return new UserResponse(first.id(), first.username(), roles);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED), false);
     }
 }
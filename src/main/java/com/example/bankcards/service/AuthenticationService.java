@@ -8,9 +8,12 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.JwtService;
+import com.example.bankcards.security.LoginThrottle;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -24,8 +27,11 @@ public class AuthenticationService {
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final LoginThrottle loginThrottle;
+
+    public JwtAuthenticationResponse signUp(SignUpRequest request, String clientAddress) {
+        loginThrottle.checkAddress(clientAddress);
 
-    public JwtAuthenticationResponse signUp(SignUpRequest request) {
         if (userRepository.findByUsername(request.username()).isPresent()) {
             throw new IllegalArgumentException("Username " + request.username() + " is already taken");
         }
@@ -45,13 +51,22 @@ public class AuthenticationService {
         return new JwtAuthenticationResponse(jwt);
     }
 
-    public JwtAuthenticationResponse login(LoginRequest request) {
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(request.username(), request.password())
-        );
+    public JwtAuthenticationResponse login(LoginRequest request, String clientAddress) {
+        loginThrottle.checkAddress(clientAddress);
+        loginThrottle.checkUsername(request.username());
+
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(request.username(), request.password())
+            );
+        } catch (AuthenticationException ex) {
+            loginThrottle.recordFailure(request.username());
+            throw ex;
+        }
 
-        User user = userRepository.findByUsername(request.username())
-            .orElseThrow(() -> new IllegalArgumentException("Invalid username"));
+        // The principal is the user just loaded (or re-saved with an upgraded hash) by the authentication provider
+        User user = (User) authentication.getPrincipal();
 
         String jwt = jwtService.generateJwt(user);
         return new JwtAuthenticationResponse(jwt);
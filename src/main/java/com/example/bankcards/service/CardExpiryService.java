@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.AdvisoryLock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class CardExpiryService {
+    // Matches the partial index predicate, so each chunk is an index range scan over cards that are still due.
+    // Transfers on a striped card hold one of its stripes and not its row, so a card is expired only once all its
+    // stripes are locked too. The summaries of the expired cards move in the same statement, in the order
+    // CardSummaryService writes them
+    private static final String EXPIRE_CHUNK = """
+        WITH due AS (
+            SELECT id, status, balance_stripes FROM cards
+            WHERE expires_at <= ? AND status <> 'EXPIRED'
+            ORDER BY expires_at
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+        ), locked_stripes AS (
+            SELECT s.card_id, s.balance FROM card_balance_stripes s
+            JOIN due ON due.id = s.card_id
+            FOR UPDATE OF s SKIP LOCKED
+        ), ready AS (
+            SELECT due.id, due.status, coalesce(sum(ls.balance), 0) AS stripe_balance
+            FROM due
+            LEFT JOIN locked_stripes ls ON ls.card_id = due.id
+            GROUP BY due.id, due.status, due.balance_stripes
+            HAVING count(ls.card_id) = due.balance_stripes
+        ), expired AS (
+            UPDATE cards c
+            SET status = 'EXPIRED', version = c.version + 1
+            FROM ready
+            WHERE c.id = ready.id
+            RETURNING c.user_id, ready.status AS previous_status,
+                CASE WHEN c.balance_stripes > 0 THEN ready.stripe_balance ELSE c.balance END AS balance
+        ), summarized AS (
+            INSERT INTO card_summaries (user_id, status, card_count, balance)
+            SELECT user_id, status, sum(card_count), sum(balance)
+            FROM (
+                SELECT user_id, previous_status AS status, -1 AS card_count, -balance AS balance FROM expired
+                UNION ALL
+                SELECT user_id, 'EXPIRED', 1, balance FROM expired
+            ) moved
+            GROUP BY user_id, status
+            ORDER BY user_id, status
+            ON CONFLICT (user_id, status) DO UPDATE
+            SET card_count = card_summaries.card_count + EXCLUDED.card_count,
+                balance = card_summaries.balance + EXCLUDED.balance
+        )
+        SELECT (SELECT count(*) FROM due) AS due, (SELECT count(*) FROM expired) AS expired
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final Counter expiredCards;
+    private final Timer completedRuns;
+    private final Timer skippedRuns;
+
+    public CardExpiryService(
+        JdbcTemplate jdbcTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${card-expiry.batch-size}") int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.expiredCards = Counter.builder("bank.card.expiry.cards")
+            .description("Cards moved to EXPIRED by the expiry job")
+            .register(meterRegistry);
+        this.completedRuns = runTimer(meterRegistry, "completed");
+        this.skippedRuns = runTimer(meterRegistry, "skipped");
+    }
+
+    // Returns the number of expired cards, or -1 when another node holds the lock
+    @Scheduled(cron = "${card-expiry.cron}", zone = "UTC")
+    public int expireCards() {
+        long startedAt = System.nanoTime();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        // Each chunk commits on its own, so row locks are held only for one chunk
+        Optional<Integer> result = AdvisoryLock.runExclusively(jdbcTemplate, AdvisoryLock.CARD_EXPIRY, (connection, session) -> {
+            int total = 0;
+            Chunk chunk;
+            // A full chunk may have more due cards behind it. Cards skipped as busy wait for the next run
+            do {
+                chunk = session.queryForObject(
+                    EXPIRE_CHUNK,
+                    (resultSet, row) -> new Chunk(resultSet.getInt("due"), resultSet.getInt("expired")),
+                    today,
+                    batchSize
+                );
+                expiredCards.increment(chunk.expired());
+                total += chunk.expired();
+            } while (chunk.due() == batchSize && chunk.expired() > 0);
+            return total;
+        });
+
+        if (result.isEmpty()) {
+            skippedRuns.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            log.debug("Card expiry is already running on another node");
+            return -1;
+        }
+
+        int expired = result.get();
+        completedRuns.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (expired > 0) {
+            log.info("Expired {} card(s) due by {}", expired, today);
+        }
+        return expired;
+    }
+
+    private static Timer runTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("bank.card.expiry")
+            .description("Card expiry job duration")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private record Chunk(int due, int expired) {}
+}
@@ -0,0 +1,269 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.AdvisoryLock;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+// Card counts and balances per holder and status, kept in card_summaries by the transaction that changes the cards.
+// Transfers only move money between ACTIVE cards of one holder, so they never change a summary
+@Slf4j
+@Service
+public class CardSummaryService {
+    private static final UUID ALL_USERS = new UUID(0, 0);
+
+    // Same order as the expiry job upserts in, so that writers of several summary rows cannot deadlock
+    private static final Comparator<Key> KEY_ORDER = Comparator
+        .comparing(Key::userId, UserCardService.LOCK_ORDER)
+        .thenComparing(key -> key.status().name());
+
+    private static final String APPLY_DELTA = """
+        INSERT INTO card_summaries (user_id, status, card_count, balance)
+        VALUES (?, ?, ?, ?)
+        ON CONFLICT (user_id, status) DO UPDATE
+        SET card_count = card_summaries.card_count + EXCLUDED.card_count,
+            balance = card_summaries.balance + EXCLUDED.balance
+        """;
+
+    private static final String FIND_USER_SUMMARY = """
+        SELECT status, card_count, balance
+        FROM card_summaries
+        WHERE user_id = ?
+        """;
+
+    private static final String FIND_GLOBAL_SUMMARY = """
+        SELECT status, sum(card_count) AS card_count, sum(balance) AS balance
+        FROM card_summaries
+        GROUP BY status
+        """;
+
+    // Rows absent on one side count as zero, so summaries left at zero by cards that moved on are not drift
+    private static final String FIND_DRIFT = """
+        WITH actual AS (
+            SELECT c.user_id, c.status, count(*) AS card_count, sum(CASE WHEN c.balance_stripes > 0
+                THEN coalesce((SELECT sum(s.balance) FROM card_balance_stripes s WHERE s.card_id = c.id), 0)
+                ELSE c.balance END) AS balance
+            FROM cards c
+            GROUP BY c.user_id, c.status
+        )
+        SELECT coalesce(a.user_id, s.user_id) AS user_id,
+            coalesce(a.status, s.status) AS status,
+            coalesce(a.card_count, 0) - coalesce(s.card_count, 0) AS card_count,
+            coalesce(a.balance, 0) - coalesce(s.balance, 0) AS balance
+        FROM actual a
+        FULL JOIN card_summaries s ON s.user_id = a.user_id AND s.status = a.status
+        WHERE coalesce(a.card_count, 0) <> coalesce(s.card_count, 0)
+            OR coalesce(a.balance, 0) <> coalesce(s.balance, 0)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardRepository cardRepository;
+    private final Cache<UUID, CardSummaryResponse> summaries;
+    private final Counter corrections;
+
+    public CardSummaryService(
+        JdbcTemplate jdbcTemplate,
+        CardRepository cardRepository,
+        MeterRegistry meterRegistry,
+        @Value("${card-summary.cache.maximum-size}") long maximumSize,
+        @Value("${card-summary.cache.ttl}") Duration ttl
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardRepository = cardRepository;
+        this.summaries = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .build();
+        this.corrections = Counter.builder("bank.card.summary.corrections")
+            .description("Summary rows corrected by the nightly reconciliation")
+            .register(meterRegistry);
+    }
+
+    public CardSummaryResponse getUserSummary(UUID userId) {
+        return summaries.get(userId, id ->
+            toResponse(jdbcTemplate.query(FIND_USER_SUMMARY, CardSummaryService::mapStatusRow, id)));
+    }
+
+    public CardSummaryResponse getGlobalSummary() {
+        return summaries.get(ALL_USERS, id ->
+            toResponse(jdbcTemplate.query(FIND_GLOBAL_SUMMARY, CardSummaryService::mapStatusRow)));
+    }
+
+    public void cardCreated(Card card) {
+        apply(jdbcTemplate, List.of(new Delta(card.getHolder().getId(), card.getStatus(), 1, card.getBalance())));
+    }
+
+    // For imports: summaries of all chunks are written once at the end, and in lock order
+    public CreatedCards createdCards() {
+        return new CreatedCards();
+    }
+
+    // The card must be managed and already carry its new status. Reading the balance flushes the status update, which
+    // locks the card row, and locks the stripes of a striped card, so the balance cannot change until the commit
+    public void statusChanged(Card card, CardStatus previousStatus) {
+        if (card.getStatus() == previousStatus) {
+            return;
+        }
+
+        BigDecimal balance = cardRepository.lockTotalBalanceById(card.getId());
+        Map<Key, Delta> deltas = new TreeMap<>(KEY_ORDER);
+        add(deltas, card.getHolder().getId(), previousStatus, -1, balance.negate());
+        add(deltas, card.getHolder().getId(), card.getStatus(), 1, balance);
+        apply(jdbcTemplate, deltas.values());
+    }
+
+    // The card row must already be locked. The stripes of a striped card are locked here
+    public void cardDeleted(Card card) {
+        BigDecimal balance = cardRepository.lockTotalBalanceById(card.getId());
+        apply(jdbcTemplate, List.of(new Delta(card.getHolder().getId(), card.getStatus(), -1, balance.negate())));
+    }
+
+    // Returns the number of corrected summary rows, or -1 when another node holds the lock
+    @Scheduled(cron = "${card-summary.reconcile-cron}", zone = "UTC")
+    public int reconcile() {
+        Optional<Integer> result = AdvisoryLock.runExclusively(
+            jdbcTemplate,
+            AdvisoryLock.CARD_SUMMARY_RECONCILE,
+            CardSummaryService::reconcile
+        );
+
+        if (result.isEmpty()) {
+            log.debug("Card summary reconciliation is already running on another node");
+            return -1;
+        }
+
+        int corrected = result.get();
+        corrections.increment(corrected);
+        if (corrected > 0) {
+            log.warn("Corrected {} card summary row(s) that drifted from the cards table", corrected);
+        }
+        return corrected;
+    }
+
+    // Cards and their summaries change in one transaction, so a single snapshot sees them agree. What differs there
+    // is applied as deltas, which add up with any change committed after the snapshot
+    private static int reconcile(Connection connection, JdbcTemplate session) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        int isolation = connection.getTransactionIsolation();
+        try {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            List<Delta> drift = session.query(FIND_DRIFT, CardSummaryService::mapDelta);
+            connection.commit();
+
+            connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            Map<Key, Delta> deltas = new TreeMap<>(KEY_ORDER);
+            drift.forEach(delta -> deltas.put(new Key(delta.userId(), delta.status()), delta));
+            apply(session, deltas.values());
+            connection.commit();
+            return drift.size();
+        } catch (SQLException | RuntimeException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setTransactionIsolation(isolation);
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void apply(JdbcTemplate jdbcTemplate, Collection<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(APPLY_DELTA, new ArrayList<>(deltas), deltas.size(), (statement, delta) -> {
+            statement.setObject(1, delta.userId());
+            statement.setString(2, delta.status().name());
+            statement.setLong(3, delta.cardCount());
+            statement.setBigDecimal(4, delta.balance());
+        });
+    }
+
+    private static void add(Map<Key, Delta> deltas, UUID userId, CardStatus status, long cardCount, BigDecimal balance) {
+        deltas.merge(
+            new Key(userId, status),
+            new Delta(userId, status, cardCount, balance),
+            (left, right) -> new Delta(
+                userId, status, left.cardCount() + right.cardCount(), left.balance().add(right.balance())
+            )
+        );
+    }
+
+    private static CardSummaryResponse toResponse(List<Delta> rows) {
+        Map<CardStatus, CardSummaryResponse.StatusSummary> byStatus = new EnumMap<>(CardStatus.class);
+        for (CardStatus status : CardStatus.values()) {
+            byStatus.put(status, new CardSummaryResponse.StatusSummary(0, BigDecimal.ZERO));
+        }
+
+        long cardCount = 0;
+        BigDecimal balance = BigDecimal.ZERO;
+        for (Delta row : rows) {
+            byStatus.put(row.status(), new CardSummaryResponse.StatusSummary(row.cardCount(), row.balance()));
+            cardCount += row.cardCount();
+            balance = balance.add(row.balance());
+        }
+        return new CardSummaryResponse(cardCount, balance, byStatus);
+    }
+
+    private static Delta mapStatusRow(ResultSet resultSet, int row) throws SQLException {
+        return new Delta(
+            null,
+            CardStatus.valueOf(resultSet.getString("status")),
+            resultSet.getLong("card_count"),
+            resultSet.getBigDecimal("balance")
+        );
+    }
+
+    private static Delta mapDelta(ResultSet resultSet, int row) throws SQLException {
+        return new Delta(
+            resultSet.getObject("user_id", UUID.class),
+            CardStatus.valueOf(resultSet.getString("status")),
+            resultSet.getLong("card_count"),
+            resultSet.getBigDecimal("balance")
+        );
+    }
+
+    public class CreatedCards {
+        private final Map<Key, Delta> deltas = new TreeMap<>(KEY_ORDER);
+
+        private CreatedCards() {
+        }
+
+        public void add(Card card) {
+            CardSummaryService.add(deltas, card.getHolder().getId(), card.getStatus(), 1, card.getBalance());
+        }
+
+        public void apply() {
+            CardSummaryService.apply(jdbcTemplate, deltas.values());
+        }
+    }
+
+    private record Key(UUID userId, CardStatus status) {}
+
+    private record Delta(UUID userId, CardStatus status, long cardCount, BigDecimal balance) {}
+}
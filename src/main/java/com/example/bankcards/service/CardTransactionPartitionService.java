@@ -0,0 +1,100 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// Monthly partitions are created ahead of time, rows only land in the default partition if this job falls behind.
+// Such rows are moved into the month's partition when it is created, so history reads never scan the default one
+@Slf4j
+@Service
+public class CardTransactionPartitionService {
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String HAS_DEFAULT_ROWS = """
+        SELECT EXISTS (SELECT 1 FROM card_transactions_default WHERE created_at >= ? AND created_at < ?)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int partitionsAhead;
+    private final Counter movedRows;
+    private final Counter failures;
+
+    public CardTransactionPartitionService(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Value("${ledger.partitions-ahead}") int partitionsAhead
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionsAhead = partitionsAhead;
+        this.movedRows = Counter.builder("bank.ledger.partition.moved-rows")
+            .description("Ledger rows moved out of the default partition into their month's partition")
+            .register(meterRegistry);
+        this.failures = Counter.builder("bank.ledger.partition.failures")
+            .description("Monthly ledger partitions that could not be created")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${ledger.partition-cron}", zone = "UTC")
+    public void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= partitionsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+    }
+
+    void createPartition(YearMonth month) {
+        String name = "card_transactions_" + month.format(SUFFIX);
+        OffsetDateTime from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+        OffsetDateTime to = month.plusMonths(1).atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+        String create = "CREATE TABLE IF NOT EXISTS %s PARTITION OF card_transactions FOR VALUES FROM ('%s') TO ('%s')"
+            .formatted(name, from, to);
+
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_DEFAULT_ROWS, Boolean.class, from, to))) {
+                    jdbcTemplate.execute(create);
+                    return 0;
+                }
+
+                // The new partition's range must not be in the default partition while it is attached, so the
+                // default one is detached meanwhile. Detaching locks the ledger, and inserts wait for the commit
+                jdbcTemplate.execute("ALTER TABLE card_transactions DETACH PARTITION card_transactions_default");
+                jdbcTemplate.execute(create);
+                int count = jdbcTemplate.update(
+                    "INSERT INTO " + name + " SELECT * FROM card_transactions_default WHERE created_at >= ? AND created_at < ?",
+                    from, to
+                );
+                jdbcTemplate.update("DELETE FROM card_transactions_default WHERE created_at >= ? AND created_at < ?", from, to);
+                jdbcTemplate.execute("ALTER TABLE card_transactions ATTACH PARTITION card_transactions_default DEFAULT");
+                return count;
+            });
+
+            if (moved != null && moved > 0) {
+                movedRows.increment(moved);
+                log.warn("Moved {} card_transactions row(s) for {} out of the default partition", moved, month);
+            }
+        } catch (DataAccessException ex) {
+            failures.increment();
+            log.error("Could not create card_transactions partition for {}", month, ex);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.util.Hashing;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final int purgeBatchSize;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTemplate retryTemplate;
+
+    // Completed and in-flight requests, so repeated keys on this instance neither hit the DB nor run twice
+    private final Cache<String, CompletableFuture<StoredResponse>> hotKeys;
+
+    public IdempotencyService(
+        IdempotencyKeyRepository idempotencyKeyRepository,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        @Value("${idempotency.ttl}") Duration ttl,
+        @Value("${idempotency.wait-timeout}") Duration waitTimeout,
+        @Value("${idempotency.hot-tier.maximum-size}") long hotTierSize,
+        @Value("${idempotency.hot-tier.ttl}") Duration hotTierTtl,
+        @Value("${idempotency.purge.batch-size}") int purgeBatchSize,
+        @Value("${transfer.retry.max-attempts}") int maxAttempts,
+        @Value("${transfer.retry.initial-backoff}") long initialBackoff,
+        @Value("${transfer.retry.max-backoff}") long maxBackoff,
+        @Value("${transfer.retry.multiplier}") double multiplier
+    ) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.purgeBatchSize = purgeBatchSize;
+        // The key is claimed and completed in the transaction of the action, so a request either commits with its
+        // response or leaves nothing behind. Conflicts are retried here, as the action cannot retry a joined transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.retryTemplate = RetryTemplate.builder()
+            .maxAttempts(maxAttempts)
+            .exponentialBackoff(initialBackoff, multiplier, maxBackoff, true)
+            .retryOn(ConcurrencyFailureException.class)
+            .build();
+        this.hotKeys = Caffeine.newBuilder()
+            .maximumSize(hotTierSize)
+            .expireAfterWrite(hotTierTtl.compareTo(ttl) < 0 ? hotTierTtl : ttl)
+            .build();
+    }
+
+    public <T> ResponseEntity<T> execute(
+        String scope,
+        UUID userId,
+        String key,
+        Object request,
+        Class<T> responseType,
+        Supplier<ResponseEntity<T>> action
+    ) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters long");
+        }
+
+        String keyHash = Hashing.sha256Hex(userId + ":" + scope + ":" + key);
+        String requestHash = Hashing.sha256Hex(toJson(request));
+
+        CompletableFuture<StoredResponse> ownResponse = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existingResponse = hotKeys.asMap().putIfAbsent(keyHash, ownResponse);
+
+        if (existingResponse != null) {
+            return replay(await(existingResponse), requestHash, responseType);
+        }
+
+        try {
+            Outcome<T> outcome = retryTemplate.execute(context -> transactionTemplate.execute(status -> {
+                Instant now = Instant.now();
+                if (idempotencyKeyRepository.claim(keyHash, requestHash, now, now.plus(ttl)) == 0) {
+                    return new Outcome<>(null, findStored(keyHash));
+                }
+
+                ResponseEntity<T> response = action.get();
+                StoredResponse storedResponse = new StoredResponse(
+                    requestHash,
+                    response.getStatusCode().value(),
+                    response.getBody() == null ? null : toJson(response.getBody())
+                );
+
+                idempotencyKeyRepository.complete(keyHash, storedResponse.status(), storedResponse.body());
+                return new Outcome<>(response, storedResponse);
+            }));
+
+            ownResponse.complete(outcome.stored());
+            return outcome.response() != null ? outcome.response() : replay(outcome.stored(), requestHash, responseType);
+        } catch (RuntimeException ex) {
+            hotKeys.asMap().remove(keyHash, ownResponse);
+            ownResponse.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge.interval}")
+    public void purgeExpiredKeys() {
+        Instant now = Instant.now();
+        int purged = 0;
+        int deleted;
+
+        do {
+            deleted = idempotencyKeyRepository.deleteExpired(now, purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency key(s)", purged);
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> response) {
+        try {
+            return response.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw requestInProgress();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw requestInProgress();
+        }
+    }
+
+    // The claim waits for a concurrent holder of the key to finish, so a key found here is either completed by a
+    // committed request or left by a version that completed it separately
+    private StoredResponse findStored(String keyHash) {
+        IdempotencyKey stored = idempotencyKeyRepository.findById(keyHash)
+            .filter(key -> key.getResponseStatus() != null)
+            .orElseThrow(this::requestInProgress);
+
+        return new StoredResponse(stored.getRequestHash(), stored.getResponseStatus(), stored.getResponseBody());
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse storedResponse, String requestHash, Class<T> responseType) {
+        if (!storedResponse.requestHash().equals(requestHash)) {
+            throw new IllegalArgumentException(HEADER + " has already been used for a different request");
+        }
+
+        try {
+            T body = storedResponse.body() == null ? null : objectMapper.readValue(storedResponse.body(), responseType);
+            return ResponseEntity.status(storedResponse.status())
+                .header(REPLAYED_HEADER, "true")
+                .body(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", ex);
+        }
+    }
+
+    private ConcurrencyFailureException requestInProgress() {
+        return new ConcurrencyFailureException("A request with the same " + HEADER + " is still in progress");
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Idempotent request cannot be serialized", ex);
+        }
+    }
+
+    // The response of this request, or null when a stored one is replayed
+    private record Outcome<T>(
+        ResponseEntity<T> response,
+        StoredResponse stored
+    ) {
+    }
+
+    private record StoredResponse(
+        String requestHash,
+        int status,
+        String body
+    ) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.service;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+// A call that joined an outer transaction is not retried, since that transaction is already aborted; the outer
+// caller retries it as a whole
+@Retryable(
+    retryFor = ConcurrencyFailureException.class,
+    exceptionExpression = "!T(org.springframework.transaction.support.TransactionSynchronizationManager).isActualTransactionActive()",
+    maxAttemptsExpression = "${transfer.retry.max-attempts}",
+    backoff = @Backoff(
+        delayExpression = "${transfer.retry.initial-backoff}",
+        maxDelayExpression = "${transfer.retry.max-backoff}",
+        multiplierExpression = "${transfer.retry.multiplier}",
+        random = true
+    )
+)
+public @interface RetryOnConcurrencyFailure {
+}
@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Balance operations on cards whose balance is split across card_balance_stripes rows.
+// Callers hold the transaction, and lock cards in ID order, a striped card by its stripes in stripe order
+@Service
+@RequiredArgsConstructor
+public class StripedBalanceService {
+    private final CardRepository cardRepository;
+    private final TransferMetrics transferMetrics;
+
+    // For a striped card that had no free stripe holding the amount: the whole balance is gathered and spread again.
+    // False when the card has less than the amount in total, or was unstriped meanwhile
+    public boolean debit(UUID cardId, BigDecimal amount) {
+        transferMetrics.consolidated();
+        List<BigDecimal> balances = cardRepository.lockStripeBalances(cardId);
+        BigDecimal total = balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (balances.isEmpty() || total.compareTo(amount) < 0) {
+            return false;
+        }
+        setTotal(cardId, balances.size(), total.subtract(amount));
+        return true;
+    }
+
+    // For a striped card whose stripes were all busy: waits for one of them
+    public boolean credit(UUID cardId, int stripes, BigDecimal amount) {
+        return cardRepository.creditStripe(cardId, ThreadLocalRandom.current().nextInt(stripes), amount) == 1;
+    }
+
+    public BigDecimal lockTotal(UUID cardId) {
+        List<BigDecimal> balances = cardRepository.lockStripeBalances(cardId);
+        return balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // The stripes must already be locked. The remainder of an even split goes to stripe 0
+    public void setTotal(UUID cardId, int stripes, BigDecimal total) {
+        BigDecimal share = total.divide(BigDecimal.valueOf(stripes), 4, RoundingMode.DOWN);
+        BigDecimal firstShare = total.subtract(share.multiply(BigDecimal.valueOf(stripes - 1)));
+        cardRepository.setStripeBalances(cardId, firstShare, share);
+    }
+
+    // The card row must already be locked for update. The total balance is kept, 0 stripes turns striping off
+    public void resize(Card card, int stripes) {
+        int currentStripes = card.getBalanceStripes();
+        if (currentStripes == stripes) {
+            return;
+        }
+
+        BigDecimal total = currentStripes > 0 ? lockTotal(card.getId()) : card.getBalance();
+        cardRepository.deleteStripes(card.getId());
+
+        if (stripes > 0) {
+            cardRepository.insertStripes(card.getId(), stripes);
+            setTotal(card.getId(), stripes, total);
+            card.setBalance(BigDecimal.ZERO);
+        } else {
+            card.setBalance(total);
+        }
+        card.setBalanceStripes(stripes);
+    }
+
+    // Where the search for a free stripe starts. Far above any stripe count, so that every stripe is about as likely
+    public static int randomOffset() {
+        return ThreadLocalRandom.current().nextInt(1 << 20);
+    }
+}
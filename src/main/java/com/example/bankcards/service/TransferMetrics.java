@@ -0,0 +1,117 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Every meter is registered up front, so recording is a lookup in an EnumMap and never builds tags
+@Component
+public class TransferMetrics implements RetryListener {
+    public enum Endpoint {
+        TRANSFER,
+        TRANSFER_BATCH
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        REJECTED,
+        CONFLICT,
+        ERROR
+    }
+
+    public enum Reason {
+        SAME_CARD,
+        NOT_FOUND,
+        FORBIDDEN,
+        INACTIVE_CARD,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final Map<Endpoint, Map<Outcome, Timer>> timers = new EnumMap<>(Endpoint.class);
+    private final Map<Reason, Counter> rejections = new EnumMap<>(Reason.class);
+    private final Counter conflicts;
+    private final Counter consolidations;
+
+    public TransferMetrics(MeterRegistry meterRegistry) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Map<Outcome, Timer> endpointTimers = new EnumMap<>(Outcome.class);
+            for (Outcome outcome : Outcome.values()) {
+                endpointTimers.put(outcome, Timer.builder("bank.transfer")
+                    .description("Transfer latency including concurrency retries")
+                    .tag("endpoint", tagValue(endpoint))
+                    .tag("outcome", tagValue(outcome))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            }
+            timers.put(endpoint, endpointTimers);
+        }
+
+        for (Reason reason : Reason.values()) {
+            rejections.put(reason, Counter.builder("bank.transfer.rejections")
+                .description("Transfers rejected by business rules")
+                .tag("reason", tagValue(reason))
+                .register(meterRegistry));
+        }
+
+        this.conflicts = Counter.builder("bank.transfer.conflicts")
+            .description("Transfer attempts aborted by a serialization or optimistic-lock failure")
+            .register(meterRegistry);
+
+        this.consolidations = Counter.builder("bank.transfer.stripe.consolidations")
+            .description("Debits from a striped card that no single free stripe could cover")
+            .register(meterRegistry);
+    }
+
+    public void record(Endpoint endpoint, Outcome outcome, long startedAtNanos) {
+        timers.get(endpoint).get(outcome).record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void record(Endpoint endpoint, RuntimeException failure, long startedAtNanos) {
+        record(endpoint, outcomeOf(failure), startedAtNanos);
+    }
+
+    public void rejected(Reason reason) {
+        rejections.get(reason).increment();
+    }
+
+    public void consolidated() {
+        consolidations.increment();
+    }
+
+    // Called for each failed attempt of a @RetryOnConcurrencyFailure method, including the ones that are retried
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof ConcurrencyFailureException) {
+            conflicts.increment();
+        }
+    }
+
+    private static Outcome outcomeOf(RuntimeException failure) {
+        if (failure instanceof ConcurrencyFailureException) {
+            return Outcome.CONFLICT;
+        }
+        if (failure instanceof IllegalArgumentException
+            || failure instanceof IllegalStateException
+            || failure instanceof EntityNotFoundException
+            || failure instanceof AccessDeniedException) {
+            return Outcome.REJECTED;
+        }
+        return Outcome.ERROR;
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
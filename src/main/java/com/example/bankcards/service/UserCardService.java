@@ -1,54 +1,138 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardTransaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.TransactionType;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.projections.BalanceChange;
+import com.example.bankcards.repository.projections.CardTransferState;
+import com.example.bankcards.repository.projections.CardVersion;
+import com.example.bankcards.repository.projections.CardView;
 import com.example.bankcards.repository.specifications.CardSpecifications;
 import com.example.bankcards.util.CardMapper;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.Hashing;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class UserCardService {
+    static final Comparator<UUID> LOCK_ORDER = Comparator
+        .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+        .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
     private final CardRepository cardRepository;
+    private final CardTransactionRepository cardTransactionRepository;
     private final CardMapper cardMapper;
+    private final CardSummaryService cardSummaryService;
+    private final TransferMetrics transferMetrics;
+    private final StripedBalanceService stripedBalanceService;
+
+    public record CardListing(PageResponse<CardResponse> cards, String eTag) {}
 
+    // The tag is computed from the loaded page, so a full response costs no more queries than the listing itself
     @Transactional(readOnly = true)
-    public Page<CardResponse> getUserCards(User user, CardStatus status, String searchTerm, Pageable pageable) {
-        Specification<Card> spec = CardSpecifications.hasHolderId(user.getId());
+    public CardListing getUserCards(
+        User user,
+        CardStatus status,
+        String searchTerm,
+        Pageable pageable,
+        PageResponse.CountMode countMode
+    ) {
+        Specification<Card> spec = userCardsSpecification(user, status, searchTerm);
+        pageable = withStableOrder(pageable);
 
-        if (status != null) {
-            spec = spec.and(CardSpecifications.hasStatus(status));
+        // A holder's cards are counted through the user_id index, so there is nothing to approximate
+        if (countMode == PageResponse.CountMode.NONE) {
+            Slice<CardView> cards = cardRepository.findViewSlice(spec, pageable);
+            return new CardListing(
+                PageResponse.withoutCount(cards.map(cardMapper::mapToCardResponse)),
+                eTag(countMode, cards.map(UserCardService::toVersion))
+            );
         }
 
-        if (searchTerm != null && !searchTerm.isBlank()) {
-            spec = spec.and(CardSpecifications.numberEndsWith(searchTerm));
+        Page<CardView> cards = cardRepository.findAllViews(spec, pageable);
+        return new CardListing(
+            PageResponse.exact(cards.map(cardMapper::mapToCardResponse)),
+            eTag(countMode, cards.map(UserCardService::toVersion))
+        );
+    }
+
+    // Only for revalidation: one narrow query, without users and without mapping the cards
+    @Transactional(readOnly = true)
+    public String getUserCardsETag(
+        User user,
+        CardStatus status,
+        String searchTerm,
+        Pageable pageable,
+        PageResponse.CountMode countMode
+    ) {
+        Specification<Card> spec = userCardsSpecification(user, status, searchTerm);
+        pageable = withStableOrder(pageable);
+
+        return eTag(countMode, countMode == PageResponse.CountMode.NONE
+            ? cardRepository.findVersionSlice(spec, pageable)
+            : cardRepository.findVersions(spec, pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<CardResponse> scrollUserCards(
+        User user,
+        CardStatus status,
+        String searchTerm,
+        String cursor,
+        int size
+    ) {
+        Specification<Card> spec = userCardsSpecification(user, status, searchTerm);
+
+        if (cursor != null) {
+            spec = spec.and(CardSpecifications.hasIdAfter(CursorCodec.decodeUuid(cursor)));
         }
 
-        Page<Card> cardsPage = cardRepository.findAll(spec, pageable);
-        return cardsPage.map(cardMapper::mapToCardResponse);
+        List<CardView> cards = cardRepository.findViews(spec, Sort.by("id"), CursorPageResponse.fetchSize(size));
+        return CursorPageResponse.of(cards, size, card -> CursorCodec.encode(card.id()), cardMapper::mapToCardResponse);
     }
 
     @Transactional
     public CardResponse blockCard(User user, UUID id) {
-        Card card = cardRepository.findById(id)
+        Card card = cardRepository.findWithHolderById(id)
             .orElseThrow(() -> new EntityNotFoundException("Card with ID " + id + " not found"));
 
         if (!card.getHolder().getId().equals(user.getId())) {
@@ -59,48 +143,335 @@ public class UserCardService {
             throw new IllegalStateException("This card is already blocked");
         }
 
+        CardStatus previousStatus = card.getStatus();
         card.setStatus(CardStatus.BLOCKED);
         Card blockedCard = cardRepository.save(card);
+        cardSummaryService.statusChanged(blockedCard, previousStatus);
         return cardMapper.mapToCardResponse(blockedCard);
     }
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @RetryOnConcurrencyFailure
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void transferMoney(User user, TransferRequest request) {
         if (request.sourceCardId().equals(request.destinationCardId())) {
-            throw new IllegalArgumentException("Cannot transfer money to the same card");
+            throw sameCardRejection();
         }
 
         UUID sourceCardId = UUID.fromString(request.sourceCardId());
         UUID destinationCardId = UUID.fromString(request.destinationCardId());
 
-        List<Card> cardsList = cardRepository.findAllById(List.of(sourceCardId, destinationCardId));
-        Map<UUID, Card> cardsMap = cardsList.stream()
+        // Same order as Postgres sorts UUIDs, so row locks are taken like in CardRepository.findAllByIdForUpdate
+        boolean striped;
+        if (LOCK_ORDER.compare(sourceCardId, destinationCardId) < 0) {
+            striped = debit(user, sourceCardId, destinationCardId, request.amount())
+                | credit(user, sourceCardId, destinationCardId, request.amount());
+        } else {
+            striped = credit(user, sourceCardId, destinationCardId, request.amount())
+                | debit(user, sourceCardId, destinationCardId, request.amount());
+        }
+
+        // A striped card was checked without locking its row, so it is checked again now that its stripe is held.
+        // Whoever blocks or deletes it locks all its stripes, so the card cannot change from here to the commit
+        if (striped && cardRepository.countActiveByIdAndHolderId(List.of(sourceCardId, destinationCardId), user.getId()) < 2) {
+            throw transferRejection(user, sourceCardId, destinationCardId, request.amount());
+        }
+
+        cardTransactionRepository.saveAll(ledgerEntries(sourceCardId, destinationCardId, request.amount(), now()));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<CardTransactionResponse> getCardTransactions(User user, UUID id, String cursor, int size) {
+        UUID holderId = cardRepository.findHolderIdById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Card with ID " + id + " not found"));
+
+        if (!holderId.equals(user.getId())) {
+            throw new AccessDeniedException("This card does not belong to you");
+        }
+
+        int limit = CursorPageResponse.fetchSize(size);
+        List<CardTransaction> transactions;
+
+        if (cursor == null) {
+            transactions = cardTransactionRepository.findLatestByCardId(id, limit);
+        } else {
+            CursorCodec.InstantKey key = CursorCodec.decodeInstantKey(cursor);
+            transactions = cardTransactionRepository.findByCardIdBefore(id, key.instant(), key.id(), limit);
+        }
+
+        return CursorPageResponse.of(
+            transactions,
+            size,
+            transaction -> CursorCodec.encode(transaction.getCreatedAt(), transaction.getId()),
+            CardTransactionResponse::fromTransaction
+        );
+    }
+
+    // Both legs return whether their card is striped
+    private boolean debit(User user, UUID sourceCardId, UUID destinationCardId, BigDecimal amount) {
+        BalanceChange change = cardRepository.debit(sourceCardId, user.getId(), amount, StripedBalanceService.randomOffset())
+            .orElseThrow(() -> transferRejection(user, sourceCardId, destinationCardId, amount));
+        if (!change.applied() && !stripedBalanceService.debit(sourceCardId, amount)) {
+            throw transferRejection(user, sourceCardId, destinationCardId, amount);
+        }
+        return change.stripes() > 0;
+    }
+
+    private boolean credit(User user, UUID sourceCardId, UUID destinationCardId, BigDecimal amount) {
+        BalanceChange change = cardRepository.credit(destinationCardId, user.getId(), amount, StripedBalanceService.randomOffset())
+            .orElseThrow(() -> transferRejection(user, sourceCardId, destinationCardId, amount));
+        if (!change.applied() && !stripedBalanceService.credit(destinationCardId, change.stripes(), amount)) {
+            throw transferRejection(user, sourceCardId, destinationCardId, amount);
+        }
+        return change.stripes() > 0;
+    }
+
+    @RetryOnConcurrencyFailure
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public BatchTransferResponse transferMoneyBatch(User user, BatchTransferRequest request) {
+        List<UUID> cardIds = request.transfers().stream()
+            .flatMap(transfer -> Stream.of(transfer.sourceCardId(), transfer.destinationCardId()))
+            .map(UUID::fromString)
+            .distinct()
+            .toList();
+
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        List<Card> lockedCards = lockCards(user, cardIds, balances);
+        Map<UUID, Card> cards = lockedCards.stream()
             .collect(Collectors.toMap(Card::getId, Function.identity()));
+        // Read without a lock, only to tell foreign cards from missing ones
+        List<UUID> unlockedCardIds = cardIds.stream()
+            .filter(id -> !cards.containsKey(id))
+            .toList();
+        Map<UUID, CardTransferState> foreignCards = unlockedCardIds.isEmpty()
+            ? Map.of()
+            : cardRepository.findTransferStates(unlockedCardIds).stream()
+                .collect(Collectors.toMap(CardTransferState::id, Function.identity()));
+
+        List<BatchTransferResponse.TransferResult> results = new ArrayList<>();
+        List<CardTransaction> entries = new ArrayList<>();
+        Instant createdAt = now();
+        boolean anyRejected = false;
+
+        for (int i = 0; i < request.transfers().size(); i++) {
+            TransferRequest transfer = request.transfers().get(i);
+            UUID sourceCardId = UUID.fromString(transfer.sourceCardId());
+            UUID destinationCardId = UUID.fromString(transfer.destinationCardId());
+
+            RuntimeException rejection = sourceCardId.equals(destinationCardId)
+                ? sameCardRejection()
+                : checkTransfer(
+                    user,
+                    sourceCardId,
+                    destinationCardId,
+                    transferState(sourceCardId, cards, foreignCards, balances),
+                    transferState(destinationCardId, cards, foreignCards, balances),
+                    transfer.amount()
+                );
+
+            if (rejection != null) {
+                anyRejected = true;
+                results.add(new BatchTransferResponse.TransferResult(i, BatchTransferResponse.Status.REJECTED, rejection.getMessage()));
+                continue;
+            }
+
+            balances.merge(sourceCardId, transfer.amount(), BigDecimal::subtract);
+            balances.merge(destinationCardId, transfer.amount(), BigDecimal::add);
+            entries.addAll(ledgerEntries(sourceCardId, destinationCardId, transfer.amount(), createdAt));
+            results.add(new BatchTransferResponse.TransferResult(i, BatchTransferResponse.Status.APPLIED, null));
+        }
+
+        if (anyRejected && request.mode() == BatchTransferRequest.Mode.ALL_OR_NOTHING) {
+            List<BatchTransferResponse.TransferResult> rolledBack = results.stream()
+                .map(result -> result.status() == BatchTransferResponse.Status.APPLIED
+                    ? new BatchTransferResponse.TransferResult(result.index(), BatchTransferResponse.Status.ROLLED_BACK, null)
+                    : result)
+                .toList();
+            return new BatchTransferResponse(false, rolledBack);
+        }
 
-        Card sourceCard = cardsMap.get(sourceCardId);
-        Card destinationCard = cardsMap.get(destinationCardId);
+        // Dirty cards are flushed together on commit as one JDBC batch
+        for (Card card : lockedCards) {
+            if (card.getBalanceStripes() > 0) {
+                stripedBalanceService.setTotal(card.getId(), card.getBalanceStripes(), balances.get(card.getId()));
+            } else {
+                card.setBalance(balances.get(card.getId()));
+            }
+        }
+        cardTransactionRepository.saveAll(entries);
+
+        return new BatchTransferResponse(true, results);
+    }
+
+    // Locks the holder's cards among the given ones in lock order, as single transfers take them: a striped card by its
+    // row and then its stripes, whose total goes to balances. Rows up to each striped card are locked by one statement,
+    // so without striped cards that is a single statement
+    private List<Card> lockCards(User user, List<UUID> cardIds, Map<UUID, BigDecimal> balances) {
+        Set<UUID> stripedIds = new HashSet<>(cardRepository.findStripedIdsByIdAndHolderId(cardIds, user.getId()));
+        List<Card> lockedCards = new ArrayList<>();
+        List<UUID> segment = new ArrayList<>();
+        for (UUID id : cardIds.stream().sorted(LOCK_ORDER).toList()) {
+            segment.add(id);
+            if (stripedIds.contains(id)) {
+                lockedCards.addAll(cardRepository.findAllByIdAndHolderIdForUpdate(segment, user.getId()));
+                balances.put(id, stripedBalanceService.lockTotal(id));
+                segment.clear();
+            }
+        }
+        if (!segment.isEmpty()) {
+            lockedCards.addAll(cardRepository.findAllByIdAndHolderIdForUpdate(segment, user.getId()));
+        }
+
+        for (Card card : lockedCards) {
+            checkStriping(card, stripedIds.contains(card.getId()));
+            balances.putIfAbsent(card.getId(), card.getBalance());
+        }
+        return lockedCards;
+    }
+
+    // Striping changes under the card row lock, so a card striped or unstriped since the unlocked read is retried
+    private static void checkStriping(Card card, boolean striped) {
+        if ((card.getBalanceStripes() > 0) != striped) {
+            throw new ConcurrencyFailureException("Card striping changed during transfer");
+        }
+    }
+
+    // Every change to a listed card bumps its version, except the balance of a striped card, so the balance is hashed too
+    private static String eTag(PageResponse.CountMode countMode, Slice<CardVersion> cards) {
+        StringBuilder fingerprint = new StringBuilder(countMode.name());
+        if (cards instanceof Page<CardVersion> page) {
+            fingerprint.append(':').append(page.getTotalElements());
+        }
+
+        fingerprint.append(':').append(cards.hasNext());
+        for (CardVersion card : cards) {
+            fingerprint.append(':').append(card.id())
+                .append('/').append(card.version())
+                .append('/').append(card.balance().stripTrailingZeros().toPlainString());
+        }
+
+        return Hashing.sha256Hex(fingerprint.toString());
+    }
+
+    // The page and its tag may be read by different queries, so ties are broken by id to list the cards in the same order
+    private static Pageable withStableOrder(Pageable pageable) {
+        if (pageable.isUnpaged() || pageable.getSort().getOrderFor("id") != null) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().and(Sort.by("id")));
+    }
+
+    private static CardVersion toVersion(CardView card) {
+        return new CardVersion(card.id(), card.version(), card.balance());
+    }
 
+    private Specification<Card> userCardsSpecification(User user, CardStatus status, String searchTerm) {
+        Specification<Card> spec = CardSpecifications.hasHolderId(user.getId());
+
+        if (status != null) {
+            spec = spec.and(CardSpecifications.hasStatus(status));
+        }
+
+        if (searchTerm != null && !searchTerm.isBlank()) {
+            spec = spec.and(CardSpecifications.hasNumberLast4(searchTerm));
+        }
+
+        return spec;
+    }
+
+    private List<CardTransaction> ledgerEntries(
+        UUID sourceCardId,
+        UUID destinationCardId,
+        BigDecimal amount,
+        Instant createdAt
+    ) {
+        UUID transferId = UUID.randomUUID();
+        return List.of(
+            CardTransaction.builder()
+                .transferId(transferId)
+                .cardId(sourceCardId)
+                .type(TransactionType.DEBIT)
+                .amount(amount)
+                .createdAt(createdAt)
+                .build(),
+            CardTransaction.builder()
+                .transferId(transferId)
+                .cardId(destinationCardId)
+                .type(TransactionType.CREDIT)
+                .amount(amount)
+                .createdAt(createdAt)
+                .build()
+        );
+    }
+
+    // Postgres keeps microseconds, so history cursors built from stored rows match what was written
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private RuntimeException transferRejection(User user, UUID sourceCardId, UUID destinationCardId, BigDecimal amount) {
+        Map<UUID, CardTransferState> states = cardRepository.findTransferStates(List.of(sourceCardId, destinationCardId))
+            .stream()
+            .collect(Collectors.toMap(CardTransferState::id, Function.identity()));
+
+        RuntimeException rejection = checkTransfer(
+            user,
+            sourceCardId,
+            destinationCardId,
+            states.get(sourceCardId),
+            states.get(destinationCardId),
+            amount
+        );
+
+        // The card changed between the update and this check, so the transfer is retried
+        return rejection != null ? rejection : new ConcurrencyFailureException("Card state changed during transfer");
+    }
+
+    private RuntimeException checkTransfer(
+        User user,
+        UUID sourceCardId,
+        UUID destinationCardId,
+        CardTransferState sourceCard,
+        CardTransferState destinationCard,
+        BigDecimal amount
+    ) {
         if (sourceCard == null || destinationCard == null) {
-            throw new EntityNotFoundException("Card with ID " + (sourceCard == null ? sourceCardId : destinationCardId) + " not found");
+            transferMetrics.rejected(TransferMetrics.Reason.NOT_FOUND);
+            return new EntityNotFoundException("Card with ID " + (sourceCard == null ? sourceCardId : destinationCardId) + " not found");
         }
 
-        if (!sourceCard.getHolder().getId().equals(user.getId())
-            || !destinationCard.getHolder().getId().equals(user.getId())
-        ) {
-            throw new AccessDeniedException("You can only transfer money between your cards");
+        if (!sourceCard.holderId().equals(user.getId()) || !destinationCard.holderId().equals(user.getId())) {
+            transferMetrics.rejected(TransferMetrics.Reason.FORBIDDEN);
+            return new AccessDeniedException("You can only transfer money between your cards");
         }
 
-        if (sourceCard.getStatus() != CardStatus.ACTIVE || destinationCard.getStatus() != CardStatus.ACTIVE) {
-            throw new IllegalStateException("Cannot transfer money due to source or destination card being not active");
+        if (sourceCard.status() != CardStatus.ACTIVE || destinationCard.status() != CardStatus.ACTIVE) {
+            transferMetrics.rejected(TransferMetrics.Reason.INACTIVE_CARD);
+            return new IllegalStateException("Cannot transfer money due to source or destination card being not active");
         }
 
-        if (sourceCard.getBalance().compareTo(request.amount()) < 0) {
-            throw new IllegalStateException("Insufficient funds");
+        if (sourceCard.balance().compareTo(amount) < 0) {
+            transferMetrics.rejected(TransferMetrics.Reason.INSUFFICIENT_FUNDS);
+            return new IllegalStateException("Insufficient funds");
         }
 
-        sourceCard.setBalance(sourceCard.getBalance().subtract(request.amount()));
-        destinationCard.setBalance(destinationCard.getBalance().add(request.amount()));
+        return null;
+    }
 
-        cardRepository.saveAll(List.of(sourceCard, destinationCard));
+    private RuntimeException sameCardRejection() {
+        transferMetrics.rejected(TransferMetrics.Reason.SAME_CARD);
+        return new IllegalArgumentException("Cannot transfer money to the same card");
+    }
+
+    private CardTransferState transferState(
+        UUID id,
+        Map<UUID, Card> cards,
+        Map<UUID, CardTransferState> foreignCards,
+        Map<UUID, BigDecimal> balances
+    ) {
+        Card card = cards.get(id);
+        if (card == null) {
+            return foreignCards.get(id);
+        }
+        return new CardTransferState(card.getId(), card.getHolder().getId(), card.getStatus(), balances.get(card.getId()));
     }
 }
@@ -0,0 +1,41 @@
+package com.example.bankcards.util;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+
+// Runs a job on at most one node at a time. A session-level lock lives on one connection, so the whole job runs on it,
+// and a crashed node releases the lock with its connection
+public final class AdvisoryLock {
+    // Arbitrary application-wide keys for pg_try_advisory_lock, one per job
+    public static final long CARD_EXPIRY = 0x63617264_65787069L;
+    public static final long CARD_SUMMARY_RECONCILE = 0x63617264_73756d6dL;
+
+    private AdvisoryLock() {
+    }
+
+    // Returns empty without running the job when another session holds the lock
+    public static <T> Optional<T> runExclusively(JdbcTemplate jdbcTemplate, long key, Job<T> job) {
+        return Optional.ofNullable(jdbcTemplate.execute((ConnectionCallback<Optional<T>>) connection -> {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+
+            if (!Boolean.TRUE.equals(session.queryForObject("SELECT pg_try_advisory_lock(?)", Boolean.class, key))) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.ofNullable(job.run(connection, session));
+            } finally {
+                session.queryForObject("SELECT pg_advisory_unlock(?)", Boolean.class, key);
+            }
+        })).flatMap(result -> result);
+    }
+
+    @FunctionalInterface
+    public interface Job<T> {
+        T run(Connection connection, JdbcTemplate session) throws SQLException;
+    }
+}
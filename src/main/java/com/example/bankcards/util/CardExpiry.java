@@ -0,0 +1,21 @@
+package com.example.bankcards.util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+public final class CardExpiry {
+    private static final DateTimeFormatter EXPIRY_DATE = DateTimeFormatter.ofPattern("MM/yy");
+
+    private CardExpiry() {
+    }
+
+    // The first day the card is no longer valid, "12/30" gives 2031-01-01
+    public static LocalDate expiresAt(String expiryDate) {
+        return YearMonth.parse(expiryDate, EXPIRY_DATE).plusMonths(1).atDay(1);
+    }
+
+    public static String expiryDate(YearMonth month) {
+        return month.format(EXPIRY_DATE);
+    }
+}
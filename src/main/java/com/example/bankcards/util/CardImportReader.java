@@ -0,0 +1,116 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.CreateCardRequest;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+@Component
+@RequiredArgsConstructor
+public class CardImportReader {
+    private static final String CSV_HEADER = "userId,number,expiryDate,initialBalance";
+
+    private final ObjectMapper objectMapper;
+
+    public Iterator<CreateCardRequest> readJson(InputStream input) {
+        try {
+            MappingIterator<CreateCardRequest> iterator = objectMapper.readerFor(CreateCardRequest.class).readValues(input);
+
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    try {
+                        return iterator.hasNextValue();
+                    } catch (IOException ex) {
+                        throw malformedJson(ex);
+                    }
+                }
+
+                @Override
+                public CreateCardRequest next() {
+                    try {
+                        return iterator.nextValue();
+                    } catch (IOException ex) {
+                        throw malformedJson(ex);
+                    }
+                }
+            };
+        } catch (IOException ex) {
+            throw malformedJson(ex);
+        }
+    }
+
+    public Iterator<CreateCardRequest> readCsv(InputStream input) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String header = readLine(reader);
+
+        if (header == null || !header.strip().equals(CSV_HEADER)) {
+            throw new IllegalArgumentException("CSV import must start with header " + CSV_HEADER);
+        }
+
+        return new Iterator<>() {
+            private String nextLine = nextNonBlankLine();
+
+            @Override
+            public boolean hasNext() {
+                return nextLine != null;
+            }
+
+            @Override
+            public CreateCardRequest next() {
+                if (nextLine == null) {
+                    throw new NoSuchElementException();
+                }
+
+                String[] values = nextLine.split(",", -1);
+                nextLine = nextNonBlankLine();
+
+                if (values.length != 4) {
+                    throw new IllegalArgumentException("Malformed CSV import: expected 4 columns but got " + values.length);
+                }
+
+                try {
+                    return new CreateCardRequest(
+                        values[0].strip(),
+                        values[1].strip(),
+                        values[2].strip(),
+                        new BigDecimal(values[3].strip())
+                    );
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Malformed CSV import: invalid initial balance " + values[3], ex);
+                }
+            }
+
+            private String nextNonBlankLine() {
+                String line;
+                do {
+                    line = readLine(reader);
+                } while (line != null && line.isBlank());
+                return line;
+            }
+        };
+    }
+
+    private static IllegalArgumentException malformedJson(IOException ex) {
+        return new IllegalArgumentException("Malformed JSON import: " + ex.getMessage(), ex);
+    }
+
+    private static String readLine(BufferedReader reader) {
+        try {
+            return reader.readLine();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
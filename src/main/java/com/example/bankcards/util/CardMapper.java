@@ -2,6 +2,7 @@ package com.example.bankcards.util;
 
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projections.CardView;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -19,8 +20,19 @@ public class CardMapper {
             maskedNumber,
             card.getExpiryDate(),
             card.getStatus(),
-            card.getBalance(),
+            card.getTotalBalance() != null ? card.getTotalBalance() : card.getBalance(),
             holderDto
         );
     }
+
+    public CardResponse mapToCardResponse(CardView card) {
+        return new CardResponse(
+            card.id(),
+            "************" + card.numberLast4(),
+            card.expiryDate(),
+            card.status(),
+            card.balance(),
+            new CardResponse.CardholderResponse(card.holderId(), card.holderUsername())
+        );
+    }
 }
@@ -1,24 +1,44 @@
 package com.example.bankcards.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Converter
 public class CryptoConverter implements AttributeConverter<String, String> {
     private static final String ALGORITHM = "AES/ECB/PKCS5Padding";
-    private final Key key;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
 
-    public CryptoConverter(@Value("${crypto.secret}") String secret) {
-        byte[] keyBytes = secret.substring(0, 32).getBytes();
-        this.key = new SecretKeySpec(keyBytes, "AES");
+    private final CipherPool encryptCiphers;
+    private final CipherPool decryptCiphers;
+
+    // Outside the Spring context (Liquibase changes, benchmarks) timings go to the global registry
+    public CryptoConverter(String secret) {
+        this(secret, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public CryptoConverter(@Value("${crypto.secret}") String secret, MeterRegistry meterRegistry) {
+        byte[] keyBytes = secret.substring(0, 32).getBytes(StandardCharsets.UTF_8);
+        Key key = new SecretKeySpec(keyBytes, "AES");
+        this.encryptCiphers = new CipherPool(Cipher.ENCRYPT_MODE, key, cipherTimer(meterRegistry, "encrypt"));
+        this.decryptCiphers = new CipherPool(Cipher.DECRYPT_MODE, key, cipherTimer(meterRegistry, "decrypt"));
     }
 
     @Override
@@ -28,9 +48,8 @@ public class CryptoConverter implements AttributeConverter<String, String> {
         }
 
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            return Base64.getEncoder().encodeToString(cipher.doFinal(attribute.getBytes()));
+            byte[] encrypted = encryptCiphers.doFinal(attribute.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encrypted);
         } catch (Exception ex) {
             throw new IllegalStateException("Attribute encryption error", ex);
         }
@@ -43,11 +62,46 @@ public class CryptoConverter implements AttributeConverter<String, String> {
         }
 
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            return new String(cipher.doFinal(Base64.getDecoder().decode(dbData)));
+            byte[] decrypted = decryptCiphers.doFinal(Base64.getDecoder().decode(dbData));
+            return new String(decrypted, StandardCharsets.UTF_8);
         } catch (Exception ex) {
             throw new IllegalStateException("Attribute decryption error", ex);
         }
     }
+
+    private static Timer cipherTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("crypto.cipher")
+            .description("Card number encryption and decryption time")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    // ECB has no IV, so a Cipher is back in its initialized state after doFinal and can be handed to the next caller
+    private static final class CipherPool {
+        private final int mode;
+        private final Key key;
+        private final Timer timer;
+        private final BlockingQueue<Cipher> idle = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        private CipherPool(int mode, Key key, Timer timer) {
+            this.mode = mode;
+            this.key = key;
+            this.timer = timer;
+        }
+
+        private byte[] doFinal(byte[] input) throws GeneralSecurityException {
+            long startedAt = System.nanoTime();
+            Cipher cipher = idle.poll();
+            if (cipher == null) {
+                cipher = Cipher.getInstance(ALGORITHM);
+                cipher.init(mode, key);
+            }
+
+            // A cipher that failed mid-operation is dropped rather than returned in an unknown state
+            byte[] output = cipher.doFinal(input);
+            idle.offer(cipher);
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            return output;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.bankcards.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+public final class CursorCodec {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private CursorCodec() {
+    }
+
+    public static String encode(UUID id) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(16)
+            .putLong(id.getMostSignificantBits())
+            .putLong(id.getLeastSignificantBits())
+            .array());
+    }
+
+    public static UUID decodeUuid(String cursor) {
+        byte[] bytes = decode(cursor);
+        if (bytes.length != 16) {
+            throw invalidCursor();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    public static String encode(Instant instant, UUID id) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(28)
+            .putLong(instant.getEpochSecond())
+            .putInt(instant.getNano())
+            .putLong(id.getMostSignificantBits())
+            .putLong(id.getLeastSignificantBits())
+            .array());
+    }
+
+    public static InstantKey decodeInstantKey(String cursor) {
+        byte[] bytes = decode(cursor);
+        if (bytes.length != 28) {
+            throw invalidCursor();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new InstantKey(
+            Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()),
+            new UUID(buffer.getLong(), buffer.getLong())
+        );
+    }
+
+    public static String encode(String key) {
+        return ENCODER.encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decodeString(String cursor) {
+        return new String(decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decode(String cursor) {
+        try {
+            return DECODER.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw invalidCursor();
+        }
+    }
+
+    private static IllegalArgumentException invalidCursor() {
+        return new IllegalArgumentException("Invalid cursor");
+    }
+
+    public record InstantKey(Instant instant, UUID id) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+// Writes rows as they come from a stream, so an export holds one row at a time whatever its size
+@Component
+@RequiredArgsConstructor
+public class ExportWriter {
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final ObjectMapper objectMapper;
+
+    public OutputStream open(HttpServletResponse response, String name, ExportFormat format, String acceptEncoding)
+        throws IOException {
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename(name + "." + format.extension())
+            .build()
+            .toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (!acceptsGzip(acceptEncoding)) {
+            return response.getOutputStream();
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE);
+    }
+
+    public <T> void writeNdjson(Stream<T> rows, Class<T> type, OutputStream output) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (T row : (Iterable<T>) rows::iterator) {
+                writer.writeValue(generator, row);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    public <T> void writeCsv(Stream<T> rows, List<String> header, Function<T, List<?>> values, OutputStream output)
+        throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+        writeCsvLine(writer, header);
+        for (T row : (Iterable<T>) rows::iterator) {
+            writeCsvLine(writer, values.apply(row));
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvLine(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values.get(i);
+            if (value instanceof Number) {
+                writer.write(value.toString());
+            } else if (value != null) {
+                writer.write(csvField(value.toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: fields with a separator, a quote or a line break are quoted, and quotes inside are doubled.
+    // Text a spreadsheet would evaluate as a formula gets a leading apostrophe, so it opens as plain text
+    static String csvField(String value) {
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.strip().split(";");
+            if (parts[0].strip().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].strip().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs on real ports, since Actuator lives on the management port, which MockMvc does not serve
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "management.server.port=0"
+)
+@AutoConfigureObservability
+public class ActuatorEndpointsTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void prometheus_whenAnonymousOnPublicPort_shouldReturnUnauthorized() {
+        assertThat(get(serverPort, "/actuator/prometheus", null).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void prometheus_whenAnonymousOnManagementPort_shouldExposeHotPathMeters() {
+        ResponseEntity<String> response = get(managementPort, "/actuator/prometheus", null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+            .contains("bank_transfer_seconds_bucket{")
+            .contains("bank_transfer_rejections_total{")
+            .contains("security_jwt_verify_seconds_count{")
+            .contains("crypto_cipher_seconds_count{")
+            .contains("hikaricp_connections_acquire_seconds_bucket{")
+            .contains("db_connection_limiter_wait_seconds_count{");
+    }
+
+    @Test
+    void metrics_whenAnonymous_shouldReturnUnauthorized() {
+        assertThat(get(managementPort, "/actuator/metrics", null).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void metrics_whenUserIsNotAdmin_shouldReturnForbidden() {
+        User user = userRepository.save(User.builder()
+            .username("actuator-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+        try {
+            assertThat(get(managementPort, "/actuator/metrics", jwtService.generateJwt(user)).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        } finally {
+            userRepository.delete(user);
+        }
+    }
+
+    @Test
+    void metrics_whenAdmin_shouldReturnOk() {
+        User admin = userRepository.findByUsername("admin").orElseThrow();
+
+        assertThat(get(managementPort, "/actuator/metrics/bank.transfer", jwtService.generateJwt(admin)).getStatusCode())
+            .isEqualTo(HttpStatus.OK);
+    }
+
+    private ResponseEntity<String> get(int port, String path, String jwt) {
+        HttpHeaders headers = new HttpHeaders();
+        if (jwt != null) {
+            headers.setBearerAuth(jwt);
+        }
+        return restTemplate.exchange("http://localhost:" + port + path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionLimitingDataSourceTest {
+    private DataSource target;
+    private ConnectionLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new ConnectionLimitingDataSource(target, 2, Duration.ofMillis(50));
+    }
+
+    @Test
+    void getConnection_whenPermitsAreExhausted_shouldTimeOut() throws SQLException {
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection)
+            .isInstanceOf(SQLTransientConnectionException.class)
+            .hasMessageStartingWith("Timed out waiting for a database connection");
+        assertThat(dataSource.getTimeoutCount()).isEqualTo(1);
+
+        first.close();
+
+        assertThat(dataSource.getConnection()).isNotNull();
+        assertThat(dataSource.getAcquiredCount()).isEqualTo(3);
+    }
+
+    @Test
+    void close_whenCalledTwice_shouldReleaseOnePermit() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertThat(dataSource.getActiveConnections()).isZero();
+        dataSource.getConnection();
+        dataSource.getConnection();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+    }
+
+    @Test
+    void getConnection_whenTargetFails_shouldReleasePermit() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("Connection refused");
+        assertThat(dataSource.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void getConnection_whenManyVirtualThreadsCompete_shouldNeverExceedPermits() throws Exception {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(target, 4, Duration.ofSeconds(10));
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1000; i++) {
+                results.add(executor.submit(() -> {
+                    try (Connection ignored = limited.getConnection()) {
+                        maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        inUse.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+
+        assertThat(maxInUse.get()).isLessThanOrEqualTo(4);
+        assertThat(limited.getAcquiredCount()).isEqualTo(1000);
+        assertThat(limited.getActiveConnections()).isZero();
+        assertThat(limited.getTimeoutCount()).isZero();
+    }
+}
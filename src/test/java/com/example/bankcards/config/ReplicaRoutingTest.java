@@ -0,0 +1,87 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The replica is the same database under another application name, which tells the two pools apart
+@SpringBootTest(properties = {
+    "datasource.replica.enabled=true",
+    "datasource.replica.hikari.jdbc-url=${spring.datasource.url}?ApplicationName=replica",
+    "datasource.replica.lag-check-interval=3600000",
+    "datasource.replica.hikari.maximum-pool-size=3"
+})
+public class ReplicaRoutingTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        replicaLagMonitor.check();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransaction_shouldUseReplica() {
+        assertThat(applicationName(true)).isEqualTo("replica");
+        assertThat(applicationName(false)).isNotEqualTo("replica");
+    }
+
+    @Test
+    void readOnlyTransaction_afterOwnWrite_shouldUsePrimary() {
+        authenticate("writer");
+        applicationName(false);
+
+        assertThat(applicationName(true)).isNotEqualTo("replica");
+
+        authenticate("someone-else");
+        assertThat(applicationName(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void readOnlyTransaction_whenReplicaLags_shouldUsePrimary() {
+        replicaLagMonitor.recordLag(60);
+
+        assertThat(applicationName(true)).isNotEqualTo("replica");
+    }
+
+    @Test
+    void connectionLimiter_shouldTakePermitsFromEachPool() {
+        assertThat(meterRegistry.get("db.connection.limiter.permits").tag("pool", "primary").gauge().value()).isEqualTo(10);
+        assertThat(meterRegistry.get("db.connection.limiter.permits").tag("pool", "replica").gauge().value()).isEqualTo(3);
+    }
+
+    private String applicationName(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+            jdbcTemplate.queryForObject("SELECT current_setting('application_name')", String.class));
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(username, null, "ROLE_USER"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.CreateCardRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.specifications.CardSpecifications;
+import com.example.bankcards.util.QueryCountingConfiguration;
+import com.example.bankcards.util.TestCards;
+import com.example.bankcards.util.WithMockCustomUser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(QueryCountingConfiguration.class)
+public class AdminCardControllerImportTest {
+    private static final int CARDS = 120;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("import-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAll(cardRepository.findAll(CardSpecifications.hasHolderId(user.getId())));
+        userRepository.delete(user);
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void importCardsFromJson_shouldInsertCardsInJdbcBatches() throws Exception {
+        List<CreateCardRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            requests.add(new CreateCardRequest(user.getId().toString(), TestCards.randomNumber(), "01/30", BigDecimal.TEN));
+        }
+
+        QueryCountHolder.clear();
+
+        mockMvc.perform(post("/api/v1/admin/cards/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.importedCount").value(CARDS));
+
+        QueryCount queryCount = QueryCountHolder.getGrandTotal();
+
+        // 120 rows with batch size 50: three INSERT round-trips, one batch of summary upserts at the end
+        // and a constant number of lookups per chunk
+        assertThat(queryCount.getInsert()).isEqualTo(3 + 1);
+        assertThat(queryCount.getSelect()).isLessThanOrEqualTo(3 * 3);
+        assertThat(cardRepository.count(CardSpecifications.hasHolderId(user.getId()))).isEqualTo(CARDS);
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void importCardsFromCsv_shouldInsertCards() throws Exception {
+        String csv = "userId,number,expiryDate,initialBalance\n"
+            + user.getId() + "," + TestCards.randomNumber() + ",01/30,10.00\n"
+            + user.getId() + "," + TestCards.randomNumber() + ",02/31,0\n";
+
+        mockMvc.perform(post("/api/v1/admin/cards/import")
+                .contentType("text/csv")
+                .content(csv))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.importedCount").value(2));
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void importCardsFromJson_whenRowIsInvalid_shouldRejectWholeImport() throws Exception {
+        List<CreateCardRequest> requests = List.of(
+            new CreateCardRequest(user.getId().toString(), TestCards.randomNumber(), "01/30", BigDecimal.TEN),
+            new CreateCardRequest(user.getId().toString(), "1234", "01/30", BigDecimal.TEN)
+        );
+
+        mockMvc.perform(post("/api/v1/admin/cards/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.description").value("Row 1: number: Number must be 16 digits"));
+
+        assertThat(cardRepository.count(CardSpecifications.hasHolderId(user.getId()))).isZero();
+    }
+}
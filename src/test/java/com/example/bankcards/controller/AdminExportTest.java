@@ -0,0 +1,143 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.TestCards;
+import com.example.bankcards.util.WithMockCustomUser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AdminExportTest {
+    private static final int CARDS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    private User user;
+    private final List<UUID> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("export, \"" + UUID.randomUUID().toString().substring(0, 8) + "\"")
+            .password("password")
+            .build());
+        for (int i = 0; i < CARDS; i++) {
+            cardIds.add(cardRepository.save(TestCards.card(user).build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(user);
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void exportCards_asNdjson_shouldWriteOneMaskedCardPerLine() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/cards/export"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson;charset=UTF-8"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"cards.ndjson\""))
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+            .andReturn();
+
+        List<JsonNode> ownCards = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode card = objectMapper.readTree(line);
+            if (card.at("/holder/id").asText().equals(user.getId().toString())) {
+                ownCards.add(card);
+            }
+        }
+
+        assertThat(ownCards).hasSize(CARDS);
+        assertThat(ownCards).allSatisfy(card -> {
+            assertThat(card.get("number").asText()).startsWith("************");
+            assertThat(card.get("balance").decimalValue()).isEqualByComparingTo(BigDecimal.TEN);
+        });
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void exportUsers_asGzippedCsv_shouldQuoteSpecialCharacters() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/users/export")
+                .param("format", "CSV")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+            .andReturn();
+
+        String csv;
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            csv = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String quotedUsername = '"' + user.getUsername().replace("\"", "\"\"") + '"';
+
+        assertThat(csv).startsWith("id,username,roles\r\n");
+        assertThat(csv).contains("\r\n" + user.getId() + "," + quotedUsername + ",\r\n");
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"ADMIN"})
+    void exportUsers_asCsv_shouldNotLeaveFormulasExecutable() throws Exception {
+        User formulaUser = userRepository.save(User.builder()
+            .username("=HYPERLINK(\"http://evil\",\"" + UUID.randomUUID().toString().substring(0, 8) + "\")")
+            .password("password")
+            .build());
+        try {
+            String csv = mockMvc.perform(get("/api/v1/admin/users/export").param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+            String escapedUsername = "\"'" + formulaUser.getUsername().replace("\"", "\"\"") + '"';
+
+            assertThat(csv).contains("\r\n" + formulaUser.getId() + "," + escapedUsername + ",\r\n");
+        } finally {
+            userRepository.delete(formulaUser);
+        }
+    }
+
+    @Test
+    @WithMockCustomUser(roles = {"USER"})
+    void exportCards_asUser_shouldBeForbidden() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/cards/export"))
+            .andExpect(status().isForbidden());
+    }
+}
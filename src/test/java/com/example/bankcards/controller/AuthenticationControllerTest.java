@@ -0,0 +1,89 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AuthenticationControllerTest {
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("auth-" + UUID.randomUUID().toString().substring(0, 8))
+            .password(new BCryptPasswordEncoder(4).encode(PASSWORD))
+            .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.delete(user);
+    }
+
+    @Test
+    void login_whenStoredHashIsWeaker_shouldUpgradeIt() throws Exception {
+        login(user.getUsername(), PASSWORD, "10.0.0.1")
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.jwt").isNotEmpty());
+
+        String upgradedHash = userRepository.findByUsername(user.getUsername()).orElseThrow().getPassword();
+        assertThat(upgradedHash).startsWith("$2a$10$");
+        assertThat(new BCryptPasswordEncoder().matches(PASSWORD, upgradedHash)).isTrue();
+    }
+
+    @Test
+    void login_whenTooManyFailures_shouldThrottleUsername() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            login(user.getUsername(), "wrong-password", "10.0.0.2")
+                .andExpect(status().isUnauthorized());
+        }
+
+        // Even the right password is refused until a token refills, and from another address too
+        login(user.getUsername(), PASSWORD, "10.0.0.3")
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    private ResultActions login(String username, String password, String address) throws Exception {
+        return mockMvc.perform(post("/api/v1/auth/login")
+            .with(request -> {
+                request.setRemoteAddr(address);
+                return request;
+            })
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new LoginRequest(username, password))));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.LoginRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs on a real Tomcat, since the forwarded address is resolved by its valve and MockMvc has none
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "security.login-throttle.per-address.capacity=1",
+        "security.login-throttle.per-address.refill-interval=1h"
+    }
+)
+public class AuthenticationProxyTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void login_behindTrustedProxy_shouldThrottleEachForwardedAddress() {
+        assertThat(login("203.0.113.1")).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(login("203.0.113.1")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        assertThat(login("203.0.113.2")).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    private HttpStatusCode login(String forwardedFor) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", forwardedFor);
+        LoginRequest request = new LoginRequest("proxy-" + UUID.randomUUID().toString().substring(0, 8), "password");
+
+        return restTemplate.postForEntity("/api/v1/auth/login", new HttpEntity<>(request, headers), String.class)
+            .getStatusCode();
+    }
+}
@@ -1,31 +1,45 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.service.IdempotencyService;
 import com.example.bankcards.service.UserCardService;
 import com.example.bankcards.util.WithMockCustomUser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,6 +52,9 @@ public class UserCardControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private UserCardService userCardService;
 
@@ -49,7 +66,7 @@ public class UserCardControllerTest {
         String username = WithMockCustomUser.class.getMethod("username").getDefaultValue().toString();
 
         CardResponse.CardholderResponse response = new CardResponse.CardholderResponse(userId, username);
-        Page<CardResponse> cards = new PageImpl<>(List.of(
+        PageResponse<CardResponse> cards = PageResponse.exact(new PageImpl<>(List.of(
             new CardResponse(
                 UUID.randomUUID(),
                 "",
@@ -58,14 +75,61 @@ public class UserCardControllerTest {
                 BigDecimal.TEN,
                 response
             )
-        ));
+        )));
 
-        when(userCardService.getUserCards(any(User.class), any(), any(), any(Pageable.class)))
-            .thenReturn(cards);
+        when(userCardService.getUserCards(any(User.class), any(), any(), any(Pageable.class), eq(PageResponse.CountMode.EXACT)))
+            .thenReturn(new UserCardService.CardListing(cards, "cards-v1"));
 
         mockMvc.perform(get("/api/v1/cards"))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$.content[0].holder.id").value(userId.toString()));
+            .andExpect(header().string(HttpHeaders.ETAG, "\"cards-v1\""))
+            .andExpect(jsonPath("$.content[0].holder.id").value(userId.toString()))
+            .andExpect(jsonPath("$.page.totalElements").value(1));
+
+        verify(userCardService, never()).getUserCardsETag(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockCustomUser
+    void getUserCards_whenETagIsStale_shouldReturnPageWithItsETag() throws Exception {
+        PageResponse<CardResponse> cards = PageResponse.exact(new PageImpl<>(List.of()));
+
+        when(userCardService.getUserCardsETag(any(User.class), any(), any(), any(Pageable.class), eq(PageResponse.CountMode.EXACT)))
+            .thenReturn("cards-v2");
+        when(userCardService.getUserCards(any(User.class), any(), any(), any(Pageable.class), eq(PageResponse.CountMode.EXACT)))
+            .thenReturn(new UserCardService.CardListing(cards, "cards-v2"));
+
+        mockMvc.perform(get("/api/v1/cards").header(HttpHeaders.IF_NONE_MATCH, "\"cards-v1\""))
+            .andExpect(status().isOk())
+            .andExpect(header().stringValues(HttpHeaders.ETAG, "\"cards-v2\""));
+    }
+
+    @Test
+    @WithMockCustomUser
+    void getUserCards_whenETagMatches_shouldReturnNotModifiedWithoutLoadingCards() throws Exception {
+        when(userCardService.getUserCardsETag(any(User.class), any(), any(), any(Pageable.class), eq(PageResponse.CountMode.EXACT)))
+            .thenReturn("cards-v1");
+
+        mockMvc.perform(get("/api/v1/cards").header(HttpHeaders.IF_NONE_MATCH, "\"cards-v1\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"cards-v1\""))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+
+        verify(userCardService, never()).getUserCards(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockCustomUser
+    void getUserCards_whenCountIsNone_shouldOmitTotals() throws Exception {
+        PageResponse<CardResponse> cards = PageResponse.withoutCount(new SliceImpl<>(List.of(), PageRequest.of(0, 20), true));
+
+        when(userCardService.getUserCards(any(User.class), any(), any(), any(Pageable.class), eq(PageResponse.CountMode.NONE)))
+            .thenReturn(new UserCardService.CardListing(cards, "cards-v1"));
+
+        mockMvc.perform(get("/api/v1/cards").param("count", "NONE"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.page.hasNext").value(true))
+            .andExpect(jsonPath("$.page.totalElements").doesNotExist());
     }
 
     @Test
@@ -75,6 +139,44 @@ public class UserCardControllerTest {
             .andExpect(status().isUnauthorized());
     }
 
+    @Test
+    @WithMockCustomUser
+    void scrollUserCards_shouldPassCursorAndReturnNextCursor() throws Exception {
+        CursorPageResponse<CardResponse> cards = new CursorPageResponse<>(List.of(), 2, true, "next");
+
+        when(userCardService.scrollUserCards(any(User.class), isNull(), isNull(), eq("current"), eq(2)))
+            .thenReturn(cards);
+
+        mockMvc.perform(get("/api/v1/cards/scroll")
+                .param("cursor", "current")
+                .param("size", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.hasNext").value(true))
+            .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @WithMockCustomUser
+    void getCardTransactions_shouldReturnHistorySlice() throws Exception {
+        UUID cardId = UUID.randomUUID();
+        CardTransactionResponse transaction = new CardTransactionResponse(
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            TransactionType.DEBIT,
+            new BigDecimal("10.00"),
+            Instant.parse("2026-10-01T10:15:30Z")
+        );
+
+        when(userCardService.getCardTransactions(any(User.class), eq(cardId), isNull(), eq(20)))
+            .thenReturn(new CursorPageResponse<>(List.of(transaction), 20, false, null));
+
+        mockMvc.perform(get("/api/v1/cards/{id}/transactions", cardId))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content[0].type").value("DEBIT"))
+            .andExpect(jsonPath("$.content[0].createdAt").value("2026-10-01T10:15:30Z"))
+            .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
     @Test
     @WithMockCustomUser
     void blockCard_whenCardExistsAndIsOwned_shouldReturnOk() throws Exception {
@@ -105,12 +207,63 @@ public class UserCardControllerTest {
             new BigDecimal("100.00")
         );
 
+        long transfersBefore = transferCount("success");
+
         mockMvc.perform(post("/api/v1/cards/transfer")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
             .andExpect(status().isOk());
 
         verify(userCardService, times(1)).transferMoney(any(User.class), any(TransferRequest.class));
+        assertThat(transferCount("success")).isEqualTo(transfersBefore + 1);
+    }
+
+    @Test
+    @WithMockCustomUser
+    void transferMoney_whenTransferIsRejected_shouldRecordRejectedOutcome() throws Exception {
+        TransferRequest request = new TransferRequest(
+            UUID.randomUUID().toString(),
+            UUID.randomUUID().toString(),
+            new BigDecimal("100.00")
+        );
+        doThrow(new IllegalStateException("Insufficient funds"))
+            .when(userCardService).transferMoney(any(User.class), any(TransferRequest.class));
+
+        long rejectedBefore = transferCount("rejected");
+
+        mockMvc.perform(post("/api/v1/cards/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(transferCount("rejected")).isEqualTo(rejectedBefore + 1);
+    }
+
+    @Test
+    @WithMockCustomUser
+    void transferMoney_whenIdempotencyKeyIsRepeated_shouldTransferOnce() throws Exception {
+        TransferRequest request = new TransferRequest(
+            UUID.randomUUID().toString(),
+            UUID.randomUUID().toString(),
+            new BigDecimal("100.00")
+        );
+        String key = UUID.randomUUID().toString();
+
+        mockMvc.perform(post("/api/v1/cards/transfer")
+                .header(IdempotencyService.HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER));
+
+        mockMvc.perform(post("/api/v1/cards/transfer")
+                .header(IdempotencyService.HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"));
+
+        verify(userCardService, times(1)).transferMoney(any(User.class), any(TransferRequest.class));
     }
 
     @Test
@@ -127,4 +280,49 @@ public class UserCardControllerTest {
                 .content(objectMapper.writeValueAsString(badRequest)))
             .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @WithMockCustomUser
+    void transferMoneyBatch_whenBatchIsRolledBack_shouldReturnUnprocessableEntity() throws Exception {
+        BatchTransferRequest request = new BatchTransferRequest(
+            List.of(new TransferRequest(
+                UUID.randomUUID().toString(),
+                UUID.randomUUID().toString(),
+                new BigDecimal("100.00")
+            )),
+            BatchTransferRequest.Mode.ALL_OR_NOTHING
+        );
+
+        when(userCardService.transferMoneyBatch(any(User.class), any(BatchTransferRequest.class)))
+            .thenReturn(new BatchTransferResponse(false, List.of(
+                new BatchTransferResponse.TransferResult(0, BatchTransferResponse.Status.REJECTED, "Insufficient funds")
+            )));
+
+        mockMvc.perform(post("/api/v1/cards/transfers:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isUnprocessableEntity())
+            .andExpect(jsonPath("$.results[0].reason").value("Insufficient funds"));
+    }
+
+    @Test
+    @WithMockCustomUser
+    void transferMoneyBatch_whenTransfersAreEmpty_shouldReturnBadRequest() throws Exception {
+        BatchTransferRequest request = new BatchTransferRequest(List.of(), BatchTransferRequest.Mode.BEST_EFFORT);
+
+        mockMvc.perform(post("/api/v1/cards/transfers:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isBadRequest());
+
+        verify(userCardService, never()).transferMoneyBatch(any(User.class), any(BatchTransferRequest.class));
+    }
+
+    private long transferCount(String outcome) {
+        return meterRegistry.get("bank.transfer")
+            .tag("endpoint", "transfer")
+            .tag("outcome", outcome)
+            .timer()
+            .count();
+    }
 }
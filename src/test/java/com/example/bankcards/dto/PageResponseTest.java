@@ -0,0 +1,37 @@
+package com.example.bankcards.dto;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageResponseTest {
+    @Test
+    void approximate_onLastPage_shouldReportRealTotal() {
+        List<Integer> content = Collections.nCopies(17, 1);
+
+        PageResponse<Integer> response = PageResponse.approximate(new SliceImpl<>(content, PageRequest.of(1, 20), false), 100);
+
+        assertThat(response.page().totalElements()).isEqualTo(37);
+        assertThat(response.page().totalPages()).isEqualTo(2);
+    }
+
+    @Test
+    void approximate_onEmptyPagePastEnd_shouldFallBackToEstimate() {
+        PageResponse<Integer> response = PageResponse.approximate(new SliceImpl<>(List.of(), PageRequest.of(5, 20), false), 40);
+
+        assertThat(response.page().totalElements()).isEqualTo(40);
+        assertThat(response.page().totalPages()).isEqualTo(2);
+    }
+
+    @Test
+    void approximate_onEmptyPagePastEnd_shouldNotReportMoreThanPageStart() {
+        PageResponse<Integer> response = PageResponse.approximate(new SliceImpl<>(List.of(), PageRequest.of(5, 20), false), 500);
+
+        assertThat(response.page().totalElements()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BoundedPasswordEncoderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void encode_whenQueueIsFull_shouldRejectImmediately() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(any())).thenAnswer(invocation -> {
+            hashing.countDown();
+            release.await();
+            return "hash";
+        });
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, meterRegistry)) {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+            hashing.await();
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+            while (meterRegistry.get("executor.queued").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(() -> encoder.encode("third"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessage("Password hashing queue is full");
+            assertThat(meterRegistry.get("security.password.hashing.rejected").counter().count()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(running.get()).isEqualTo("hash");
+            assertThat(queued.get()).isEqualTo("hash");
+        }
+    }
+
+    @Test
+    void matches_shouldPropagateDelegateFailures() {
+        PasswordEncoder failingEncoder = mock(PasswordEncoder.class);
+        when(failingEncoder.matches(any(), any())).thenThrow(new IllegalArgumentException("Invalid salt"));
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(failingEncoder, 1, 1, meterRegistry)) {
+            assertThatThrownBy(() -> encoder.matches("password", "hash"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid salt");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JwtServiceTest {
+    private static final String SECRET = "dGVzdC1zZWNyZXQta2V5LXRoYXQtaXMtbG9uZy1lbm91Z2gtZm9yLWhtYWMtc2hh";
+    private static final String OTHER_SECRET = "b3RoZXItc2VjcmV0LWtleS10aGF0LWlzLWxvbmctZW5vdWdoLWZvci1obWFjLXNoYQ==";
+
+    private final User user = User.builder()
+        .username("user")
+        .password("password")
+        .roles(Set.of(Role.builder().name("ROLE_USER").build()))
+        .build();
+
+    @Test
+    void verify_shouldReturnSubjectAndRoles() {
+        JwtService jwtService = new JwtService(SECRET, 60_000L, 10);
+
+        VerifiedJwt verified = jwtService.verify(jwtService.generateJwt(user));
+
+        assertThat(verified.subject()).isEqualTo("user");
+        assertThat(verified.roles()).containsExactly("ROLE_USER");
+        assertThat(verified.expiresAt()).isInTheFuture();
+    }
+
+    @Test
+    void verify_whenSignedWithAnotherKey_shouldThrow() {
+        JwtService jwtService = new JwtService(SECRET, 60_000L, 10);
+        String foreignJwt = new JwtService(OTHER_SECRET, 60_000L, 10).generateJwt(user);
+
+        assertThatThrownBy(() -> jwtService.verify(foreignJwt)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void verify_whenExpired_shouldThrow() {
+        JwtService jwtService = new JwtService(SECRET, -1_000L, 10);
+        String jwt = jwtService.generateJwt(user);
+
+        assertThatThrownBy(() -> jwtService.verify(jwt)).isInstanceOf(ExpiredJwtException.class);
+    }
+}
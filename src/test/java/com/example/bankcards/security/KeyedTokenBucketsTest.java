@@ -0,0 +1,33 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyedTokenBucketsTest {
+    private static final long MINUTE = 60_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(-42 * MINUTE);
+
+    @Test
+    void tryAcquire_whenOneKeyIsExhausted_shouldLeaveEveryOtherKeyFull() {
+        KeyedTokenBuckets buckets = new KeyedTokenBuckets(100_000, 5, MINUTE, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(buckets.tryAcquire("alice")).isZero();
+        }
+        assertThat(buckets.tryAcquire("alice")).isEqualTo(MINUTE);
+
+        // Striped buckets of this many keys would share alice's stripe for some of them
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(buckets.delay("user-" + i)).isZero();
+            assertThat(buckets.tryAcquire("user-" + i)).isZero();
+        }
+        assertThat(buckets.delay("alice")).isEqualTo(MINUTE);
+
+        clock.addAndGet(MINUTE);
+        assertThat(buckets.tryAcquire("alice")).isZero();
+    }
+}
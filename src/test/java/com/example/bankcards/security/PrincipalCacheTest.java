@@ -0,0 +1,51 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrincipalCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private PrincipalCache principalCache;
+    private AtomicInteger loads;
+    private Function<String, UserDetails> loader;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        principalCache = new PrincipalCache(100, Duration.ofMinutes(5), meterRegistry);
+        loads = new AtomicInteger();
+        loader = username -> {
+            loads.incrementAndGet();
+            return User.builder().username(username).password("password").build();
+        };
+    }
+
+    @Test
+    void get_whenCalledRepeatedly_shouldLoadOnce() {
+        principalCache.get("user", loader);
+        UserDetails cached = principalCache.get("user", loader);
+
+        assertThat(cached.getUsername()).isEqualTo("user");
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "principals").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void evict_shouldReloadOnNextGet() {
+        principalCache.get("user", loader);
+        principalCache.evict("user");
+        principalCache.get("user", loader);
+
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedTokenBucketsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(-42 * SECOND);
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenRefillAtInterval() {
+        StripedTokenBuckets buckets = new StripedTokenBuckets(16, 3, SECOND, clock::get);
+
+        assertThat(buckets.tryAcquire("alice")).isZero();
+        assertThat(buckets.tryAcquire("alice")).isZero();
+        assertThat(buckets.tryAcquire("alice")).isZero();
+        assertThat(buckets.tryAcquire("alice")).isEqualTo(SECOND);
+        assertThat(buckets.delay("alice")).isEqualTo(SECOND);
+
+        clock.addAndGet(SECOND / 2);
+        assertThat(buckets.tryAcquire("alice")).isEqualTo(SECOND / 2);
+
+        clock.addAndGet(SECOND / 2);
+        assertThat(buckets.delay("alice")).isZero();
+        assertThat(buckets.tryAcquire("alice")).isZero();
+        assertThat(buckets.tryAcquire("alice")).isPositive();
+
+        // An idle bucket fills up to capacity, not beyond
+        clock.addAndGet(60 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.tryAcquire("alice")).isZero();
+        }
+        assertThat(buckets.tryAcquire("alice")).isPositive();
+    }
+
+    @Test
+    void tryAcquire_whenContended_shouldHandOutExactlyCapacity() throws Exception {
+        StripedTokenBuckets buckets = new StripedTokenBuckets(1024, 100, 60 * SECOND, System::nanoTime);
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 1000; j++) {
+                        if (buckets.tryAcquire("10.0.0.1") == 0) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        assertThat(acquired).hasValue(100);
+    }
+}
@@ -13,12 +13,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -39,6 +41,9 @@ public class AdminCardServiceTest {
     @Mock
     private CardMapper cardMapper;
 
+    @Mock
+    private CardSummaryService cardSummaryService;
+
     @InjectMocks
     private AdminCardService adminCardService;
 
@@ -68,7 +73,11 @@ public class AdminCardServiceTest {
         adminCardService.createCard(request);
 
         verify(cardRepository).existsByNumberHash(anyString());
-        verify(cardRepository).save(any(Card.class));
+
+        ArgumentCaptor<Card> cardCaptor = ArgumentCaptor.forClass(Card.class);
+        verify(cardRepository).save(cardCaptor.capture());
+
+        assertThat(cardCaptor.getValue().getNumberLast4()).isEqualTo("4444");
     }
 
     @Test
@@ -123,7 +132,7 @@ public class AdminCardServiceTest {
             .build();
         UpdateCardStatusRequest request = new UpdateCardStatusRequest(CardStatus.BLOCKED);
 
-        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+        when(cardRepository.findWithHolderById(card.getId())).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(cardMapper.mapToCardResponse(any(Card.class))).thenReturn(null);
 
@@ -133,6 +142,7 @@ public class AdminCardServiceTest {
         verify(cardRepository).save(cardCaptor.capture());
 
         assertThat(cardCaptor.getValue().getStatus()).isEqualTo(CardStatus.BLOCKED);
+        verify(cardSummaryService).statusChanged(card, CardStatus.ACTIVE);
     }
 
     @Test
@@ -140,7 +150,7 @@ public class AdminCardServiceTest {
         UUID nonExistentCardId = UUID.randomUUID();
         UpdateCardStatusRequest request = new UpdateCardStatusRequest(CardStatus.BLOCKED);
 
-        when(cardRepository.findById(nonExistentCardId)).thenReturn(Optional.empty());
+        when(cardRepository.findWithHolderById(nonExistentCardId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> adminCardService.updateCardStatus(nonExistentCardId, request))
             .isInstanceOf(EntityNotFoundException.class)
@@ -157,7 +167,7 @@ public class AdminCardServiceTest {
             .build();
         UpdateCardStatusRequest request = new UpdateCardStatusRequest(CardStatus.EXPIRED);
 
-        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+        when(cardRepository.findWithHolderById(card.getId())).thenReturn(Optional.of(card));
 
         assertThatThrownBy(() -> adminCardService.updateCardStatus(card.getId(), request))
             .isInstanceOf(IllegalArgumentException.class)
@@ -167,22 +177,29 @@ public class AdminCardServiceTest {
     }
 
     @Test
-    void deleteCard_whenCardExists_shouldCallDeleteById() {
-        UUID cardId = UUID.randomUUID();
-        when(cardRepository.existsById(cardId)).thenReturn(true);
+    void deleteCard_whenCardExists_shouldDeleteCardAndItsSummary() {
+        Card card = Card.builder()
+            .id(UUID.randomUUID())
+            .status(CardStatus.ACTIVE)
+            .build();
+        when(cardRepository.findAllByIdForUpdate(List.of(card.getId()))).thenReturn(List.of(card));
 
-        adminCardService.deleteCard(cardId);
+        adminCardService.deleteCard(card.getId());
 
-        verify(cardRepository).deleteById(cardId);
+        InOrder inOrder = inOrder(cardSummaryService, cardRepository);
+        inOrder.verify(cardSummaryService).cardDeleted(card);
+        inOrder.verify(cardRepository).delete(card);
     }
 
     @Test
     void deleteCard_whenCardDoesNotExist_shouldThrowException() {
         UUID cardId = UUID.randomUUID();
-        when(cardRepository.existsById(cardId)).thenReturn(false);
+        when(cardRepository.findAllByIdForUpdate(List.of(cardId))).thenReturn(List.of());
 
         assertThatThrownBy(() -> adminCardService.deleteCard(cardId))
             .isInstanceOf(EntityNotFoundException.class)
             .hasMessage("Card with ID " + cardId + " not found");
+
+        verifyNoInteractions(cardSummaryService);
     }
 }
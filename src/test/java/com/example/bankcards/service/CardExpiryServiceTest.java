@@ -0,0 +1,161 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.AdvisoryLock;
+import com.example.bankcards.util.TestCards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CardExpiryServiceTest {
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private AdminCardService adminCardService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Card> cards = new ArrayList<>();
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("expiry-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAllById(cards.stream().map(Card::getId).toList());
+        userRepository.delete(user);
+    }
+
+    @Test
+    void expireCards_shouldExpireDueCardsInChunks() {
+        Card dueActive = createCard("01/20", CardStatus.ACTIVE);
+        Card dueBlocked = createCard("02/20", CardStatus.BLOCKED);
+        Card dueActiveToo = createCard("03/20", CardStatus.ACTIVE);
+        Card valid = createCard("12/35", CardStatus.ACTIVE);
+
+        assertThat(dueActive.getExpiresAt()).isEqualTo(LocalDate.of(2020, 2, 1));
+
+        int expired = service(2).expireCards();
+
+        assertThat(expired).isGreaterThanOrEqualTo(3);
+        assertThat(meterRegistry.get("bank.card.expiry.cards").counter().count()).isEqualTo(expired);
+        assertThat(meterRegistry.get("bank.card.expiry").tag("result", "completed").timer().count()).isEqualTo(1);
+
+        assertThat(reload(dueActive).getStatus()).isEqualTo(CardStatus.EXPIRED);
+        assertThat(reload(dueActive).getVersion()).isEqualTo(dueActive.getVersion() + 1);
+        assertThat(reload(dueBlocked).getStatus()).isEqualTo(CardStatus.EXPIRED);
+        assertThat(reload(dueActiveToo).getStatus()).isEqualTo(CardStatus.EXPIRED);
+        assertThat(reload(valid).getStatus()).isEqualTo(CardStatus.ACTIVE);
+        assertThat(reload(valid).getVersion()).isEqualTo(valid.getVersion());
+
+        assertThat(summary(CardStatus.ACTIVE)).containsExactly(1L, new BigDecimal("10.0000"));
+        assertThat(summary(CardStatus.BLOCKED)).containsExactly(0L, new BigDecimal("0.0000"));
+        assertThat(summary(CardStatus.EXPIRED)).containsExactly(3L, new BigDecimal("30.0000"));
+    }
+
+    @Test
+    void expireCards_whenLockIsHeldElsewhere_shouldSkipRun() throws Exception {
+        Card due = createCard("01/20", CardStatus.ACTIVE);
+        CardExpiryService service = service(100);
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_advisory_lock(" + AdvisoryLock.CARD_EXPIRY + ")");
+
+            assertThat(service.expireCards()).isEqualTo(-1);
+            assertThat(reload(due).getStatus()).isEqualTo(CardStatus.ACTIVE);
+            assertThat(meterRegistry.get("bank.card.expiry").tag("result", "skipped").timer().count()).isEqualTo(1);
+
+            statement.execute("SELECT pg_advisory_unlock(" + AdvisoryLock.CARD_EXPIRY + ")");
+        }
+
+        assertThat(service.expireCards()).isGreaterThanOrEqualTo(1);
+        assertThat(reload(due).getStatus()).isEqualTo(CardStatus.EXPIRED);
+    }
+
+    @Test
+    void expireCards_whenStripeIsHeldByTransfer_shouldSkipCardUntilNextRun() throws Exception {
+        Card due = createCard("01/20", CardStatus.ACTIVE);
+        adminCardService.updateBalanceStripes(due.getId(), new UpdateBalanceStripesRequest(4));
+        CardExpiryService service = service(100);
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("SELECT 1 FROM card_balance_stripes WHERE card_id = '" + due.getId() + "' AND stripe = 2 FOR UPDATE");
+
+            service.expireCards();
+            assertThat(reload(due).getStatus()).isEqualTo(CardStatus.ACTIVE);
+
+            connection.rollback();
+        }
+
+        assertThat(service.expireCards()).isGreaterThanOrEqualTo(1);
+        assertThat(reload(due).getStatus()).isEqualTo(CardStatus.EXPIRED);
+        assertThat(summary(CardStatus.EXPIRED)).containsExactly(1L, new BigDecimal("10.0000"));
+    }
+
+    private CardExpiryService service(int batchSize) {
+        return new CardExpiryService(jdbcTemplate, meterRegistry, batchSize);
+    }
+
+    private Card createCard(String expiryDate, CardStatus status) {
+        Card card = cardRepository.save(TestCards.card(user)
+            .expiryDate(expiryDate)
+            .status(status)
+            .build());
+        cardSummaryService.cardCreated(card);
+        cards.add(card);
+        return card;
+    }
+
+    private List<Object> summary(CardStatus status) {
+        return jdbcTemplate.queryForObject(
+            "SELECT card_count, balance FROM card_summaries WHERE user_id = ? AND status = ?",
+            (resultSet, row) -> List.of(resultSet.getLong("card_count"), resultSet.getBigDecimal("balance")),
+            user.getId(),
+            status.name()
+        );
+    }
+
+    private Card reload(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow();
+    }
+}
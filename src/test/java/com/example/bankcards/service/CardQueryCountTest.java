@@ -0,0 +1,224 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
+import com.example.bankcards.dto.UpdateCardStatusRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.specifications.CardSpecifications;
+import com.example.bankcards.util.QueryCountingConfiguration;
+import com.example.bankcards.util.TestCards;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Import(QueryCountingConfiguration.class)
+public class CardQueryCountTest {
+    private static final int HOLDERS = 10;
+    private static final int CARDS_PER_HOLDER = 4;
+
+    @Autowired
+    private AdminCardService adminCardService;
+
+    @Autowired
+    private UserCardService userCardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<User> holders;
+    private List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        holders = new ArrayList<>();
+        cards = new ArrayList<>();
+
+        for (int i = 0; i < HOLDERS; i++) {
+            User holder = userRepository.save(User.builder()
+                .username("query-count-" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password")
+                .build());
+            holders.add(holder);
+
+            for (int j = 0; j < CARDS_PER_HOLDER; j++) {
+                cards.add(cardRepository.save(createCard(holder)));
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cards.forEach(card -> jdbcTemplate.update("DELETE FROM card_transactions WHERE card_id = ?", card.getId()));
+        holders.forEach(holder ->
+            cardRepository.deleteAll(cardRepository.findAll(CardSpecifications.hasHolderId(holder.getId())))
+        );
+        userRepository.deleteAll(holders);
+    }
+
+    @Test
+    void getAllCards_shouldRunPageAndCountQueriesOnlyForAnyPageSize() {
+        for (int pageSize : List.of(5, HOLDERS * CARDS_PER_HOLDER)) {
+            QueryCountHolder.clear();
+
+            adminCardService.getAllCards(PageRequest.of(0, pageSize), PageResponse.CountMode.EXACT);
+
+            assertThat(QueryCountHolder.getGrandTotal().getSelect())
+                .as("selects for page size %d", pageSize)
+                .isEqualTo(2);
+        }
+    }
+
+    @Test
+    void getUserCards_shouldRunPageAndCountQueriesOnlyForAnyPageSize() {
+        for (int pageSize : List.of(1, CARDS_PER_HOLDER)) {
+            QueryCountHolder.clear();
+
+            userCardService.getUserCards(holders.getFirst(), null, null, PageRequest.of(0, pageSize), PageResponse.CountMode.EXACT);
+
+            assertThat(QueryCountHolder.getGrandTotal().getSelect())
+                .as("selects for page size %d", pageSize)
+                .isEqualTo(2);
+        }
+    }
+
+    @Test
+    void getUserCardsETag_shouldRunOneQueryAndChangeOnlyWithCards() {
+        User holder = holders.getFirst();
+        PageRequest pageable = PageRequest.of(0, 10);
+        QueryCountHolder.clear();
+
+        String eTag = userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.EXACT);
+
+        assertThat(QueryCountHolder.getGrandTotal().getSelect()).isEqualTo(1);
+        assertThat(userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.EXACT))
+            .isEqualTo(eTag);
+        assertThat(userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.NONE))
+            .isNotEqualTo(eTag);
+        // A full response tags the page it loaded with the same value, so its tag revalidates
+        assertThat(userCardService.getUserCards(holder, null, null, pageable, PageResponse.CountMode.EXACT).eTag())
+            .isEqualTo(eTag);
+        assertThat(userCardService.getUserCards(holder, null, null, pageable, PageResponse.CountMode.NONE).eTag())
+            .isEqualTo(userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.NONE));
+
+        userCardService.transferMoney(holder, new TransferRequest(
+            cards.get(0).getId().toString(),
+            cards.get(1).getId().toString(),
+            BigDecimal.ONE
+        ));
+        String afterTransfer = userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.EXACT);
+        assertThat(afterTransfer).isNotEqualTo(eTag);
+
+        // A striped balance changes without a version bump
+        adminCardService.updateBalanceStripes(cards.get(0).getId(), new UpdateBalanceStripesRequest(2));
+        String striped = userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.EXACT);
+        userCardService.transferMoney(holder, new TransferRequest(
+            cards.get(1).getId().toString(),
+            cards.get(0).getId().toString(),
+            BigDecimal.ONE
+        ));
+        assertThat(userCardService.getUserCardsETag(holder, null, null, pageable, PageResponse.CountMode.EXACT))
+            .isNotEqualTo(striped);
+    }
+
+    @Test
+    void getAllCards_whenCountIsNone_shouldRunPageQueryOnly() {
+        QueryCountHolder.clear();
+
+        PageResponse<CardResponse> page = adminCardService.getAllCards(PageRequest.of(0, 5), PageResponse.CountMode.NONE);
+
+        assertThat(QueryCountHolder.getGrandTotal().getSelect()).isEqualTo(1);
+        assertThat(page.content()).hasSize(5);
+        assertThat(page.page().hasNext()).isTrue();
+        assertThat(page.page().totalElements()).isNull();
+    }
+
+    @Test
+    void getAllCards_whenCountIsApproximate_shouldReuseCachedEstimate() {
+        adminCardService.getAllCards(PageRequest.of(0, 5), PageResponse.CountMode.APPROXIMATE);
+        QueryCountHolder.clear();
+
+        PageResponse<CardResponse> page = adminCardService.getAllCards(PageRequest.of(1, 5), PageResponse.CountMode.APPROXIMATE);
+
+        assertThat(QueryCountHolder.getGrandTotal().getSelect()).isEqualTo(1);
+        assertThat(page.page().countMode()).isEqualTo(PageResponse.CountMode.APPROXIMATE);
+        assertThat(page.page().totalElements()).isGreaterThan(10);
+    }
+
+    @Test
+    void scrollUserCards_shouldVisitEveryCardOnceWithoutCountQueries() {
+        User holder = holders.getFirst();
+        List<UUID> visited = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            QueryCountHolder.clear();
+
+            CursorPageResponse<CardResponse> page = userCardService.scrollUserCards(holder, null, null, cursor, 3);
+
+            assertThat(QueryCountHolder.getGrandTotal().getSelect()).isEqualTo(1);
+            page.content().forEach(card -> visited.add(card.id()));
+            cursor = page.nextCursor();
+
+            if (visited.size() == 3) {
+                cards.add(cardRepository.save(createCard(holder)));
+            }
+        } while (cursor != null);
+
+        assertThat(visited).doesNotHaveDuplicates();
+        assertThat(visited).containsAll(cards.stream()
+            .limit(CARDS_PER_HOLDER)
+            .map(Card::getId)
+            .toList());
+    }
+
+    @Test
+    void scrollUserCards_whenCursorIsMalformed_shouldThrow() {
+        assertThatThrownBy(() -> userCardService.scrollUserCards(holders.getFirst(), null, null, "not-a-cursor", 3))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    void updateCardStatus_shouldLoadCardWithHolderInOneSelect() {
+        QueryCountHolder.clear();
+
+        adminCardService.updateCardStatus(cards.getFirst().getId(), new UpdateCardStatusRequest(CardStatus.BLOCKED));
+
+        // The card with its holder, then the balance moved between summaries, read after the update locks the card
+        assertThat(QueryCountHolder.getGrandTotal().getSelect()).isEqualTo(2);
+        assertThat(QueryCountHolder.getGrandTotal().getUpdate()).isEqualTo(1);
+        assertThat(QueryCountHolder.getGrandTotal().getInsert()).isEqualTo(1);
+    }
+
+    private Card createCard(User holder) {
+        return TestCards.card(holder).build();
+    }
+}
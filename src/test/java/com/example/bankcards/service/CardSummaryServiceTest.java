@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.dto.CreateCardRequest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.UpdateCardStatusRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.TestCards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CardSummaryServiceTest {
+    @Autowired
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private AdminCardService adminCardService;
+
+    @Autowired
+    private UserCardService userCardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<UUID> cardIds = new ArrayList<>();
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("summary-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardIds.forEach(id -> jdbcTemplate.update("DELETE FROM card_transactions WHERE card_id = ?", id));
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(user);
+    }
+
+    @Test
+    void cardChanges_shouldKeepSummariesInStep() {
+        UUID first = createCard(new BigDecimal("100.50"));
+        UUID second = createCard(new BigDecimal("20.00"));
+        UUID third = createCard(new BigDecimal("5.00"));
+
+        userCardService.transferMoney(user, new TransferRequest(first.toString(), second.toString(), new BigDecimal("30.00")));
+        userCardService.blockCard(user, second);
+        adminCardService.updateCardStatus(third, new UpdateCardStatusRequest(CardStatus.BLOCKED));
+        adminCardService.updateCardStatus(third, new UpdateCardStatusRequest(CardStatus.ACTIVE));
+        adminCardService.deleteCard(first);
+
+        CardSummaryResponse summary = cardSummaryService.getUserSummary(user.getId());
+
+        assertThat(summary.cardCount()).isEqualTo(2);
+        assertThat(summary.balance()).isEqualByComparingTo("55.00");
+        assertThat(summary.byStatus().get(CardStatus.ACTIVE).cardCount()).isEqualTo(1);
+        assertThat(summary.byStatus().get(CardStatus.ACTIVE).balance()).isEqualByComparingTo("5.00");
+        assertThat(summary.byStatus().get(CardStatus.BLOCKED).cardCount()).isEqualTo(1);
+        assertThat(summary.byStatus().get(CardStatus.BLOCKED).balance()).isEqualByComparingTo("50.00");
+        assertThat(summary.byStatus().get(CardStatus.EXPIRED).cardCount()).isZero();
+        assertThat(cardSummaryService.reconcile()).isZero();
+    }
+
+    @Test
+    void reconcile_shouldCorrectDriftedSummaries() {
+        createCard(BigDecimal.TEN);
+        jdbcTemplate.update("UPDATE card_summaries SET balance = balance + 1 WHERE user_id = ?", user.getId());
+        // Written past the service, so no summary knows about it
+        cardIds.add(cardRepository.save(TestCards.card(user)
+            .status(CardStatus.BLOCKED)
+            .balance(BigDecimal.ONE)
+            .build()).getId());
+
+        assertThat(cardSummaryService.reconcile()).isEqualTo(2);
+
+        assertThat(summary(CardStatus.ACTIVE)).containsExactly(1L, new BigDecimal("10.0000"));
+        assertThat(summary(CardStatus.BLOCKED)).containsExactly(1L, new BigDecimal("1.0000"));
+        assertThat(cardSummaryService.reconcile()).isZero();
+    }
+
+    private UUID createCard(BigDecimal balance) {
+        UUID id = adminCardService.createCard(new CreateCardRequest(user.getId().toString(), TestCards.randomNumber(), "01/30", balance)).id();
+        cardIds.add(id);
+        return id;
+    }
+
+    private List<Object> summary(CardStatus status) {
+        return jdbcTemplate.queryForObject(
+            "SELECT card_count, balance FROM card_summaries WHERE user_id = ? AND status = ?",
+            (resultSet, row) -> List.of(resultSet.getLong("card_count"), resultSet.getBigDecimal("balance")),
+            user.getId(),
+            status.name()
+        );
+    }
+}
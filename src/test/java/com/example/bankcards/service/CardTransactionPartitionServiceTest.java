@@ -0,0 +1,56 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CardTransactionPartitionServiceTest {
+    // Far enough ahead that no scheduled run creates this partition
+    private static final YearMonth MONTH = YearMonth.of(2099, 1);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS card_transactions_2099_01");
+        jdbcTemplate.update("DELETE FROM card_transactions_default WHERE created_at >= '2099-01-01'");
+    }
+
+    @Test
+    void createPartition_whenDefaultPartitionHoldsMonth_shouldMoveRowsIntoIt() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update(
+            "INSERT INTO card_transactions (id, transfer_id, card_id, type, amount, created_at) VALUES (?, ?, ?, 'DEBIT', 1, ?)",
+            id, UUID.randomUUID(), UUID.randomUUID(), OffsetDateTime.of(2099, 1, 15, 12, 0, 0, 0, ZoneOffset.UTC)
+        );
+
+        new CardTransactionPartitionService(jdbcTemplate, transactionManager, meterRegistry, 0).createPartition(MONTH);
+
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT tableoid::regclass::text FROM card_transactions WHERE id = ?", String.class, id))
+            .isEqualTo("card_transactions_2099_01");
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_inherits WHERE inhrelid = 'card_transactions_default'::regclass", Integer.class))
+            .isEqualTo(1);
+        assertThat(meterRegistry.get("bank.ledger.partition.moved-rows").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.ledger.partition.failures").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.Hashing;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+public class IdempotencyServiceTest {
+    private static final String SCOPE = "test";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final UUID userId = UUID.randomUUID();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        idempotencyKeyRepository.deleteAll();
+    }
+
+    @Test
+    void execute_whenKeyIsRepeated_shouldRunActionOnceAndReplayResponse() {
+        String key = UUID.randomUUID().toString();
+
+        ResponseEntity<CardResponse> first = idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+        ResponseEntity<CardResponse> second = idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+
+        assertThat(executions).hasValue(1);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getBody()).isEqualTo(first.getBody());
+        assertThat(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void execute_whenDuplicatesArriveConcurrently_shouldWaitForFirstResult() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseEntity<CardResponse>>> responses = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, slowAction());
+                }));
+            }
+            start.countDown();
+
+            for (Future<ResponseEntity<CardResponse>> response : responses) {
+                assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            }
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(responses.stream().map(this::body).distinct()).hasSize(1);
+    }
+
+    @Test
+    void execute_whenKeyWasCompletedByAnotherInstance_shouldReplayStoredResponse() {
+        String key = UUID.randomUUID().toString();
+        IdempotencyService otherInstance = instance(idempotencyKeyRepository, 100);
+
+        ResponseEntity<CardResponse> first = otherInstance.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+        ResponseEntity<CardResponse> second = idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+
+        assertThat(executions).hasValue(1);
+        assertThat(second.getBody()).isEqualTo(first.getBody());
+    }
+
+    @Test
+    void execute_whenKeyIsReusedForDifferentRequest_shouldThrowException() {
+        String key = UUID.randomUUID().toString();
+
+        idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+
+        assertThatThrownBy(() -> idempotencyService.execute(SCOPE, userId, key, Map.of("a", 2), CardResponse.class, action()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Idempotency-Key has already been used for a different request");
+    }
+
+    @Test
+    void execute_whenActionFails_shouldReleaseKey() {
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, () -> {
+            throw new IllegalStateException("Insufficient funds");
+        })).hasMessage("Insufficient funds");
+
+        idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, action());
+
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_whenActionConflicts_shouldRetryItWithTheClaim() {
+        String key = UUID.randomUUID().toString();
+        Supplier<ResponseEntity<CardResponse>> action = action();
+
+        ResponseEntity<CardResponse> response = idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), CardResponse.class, () -> {
+            if (executions.get() == 0) {
+                executions.incrementAndGet();
+                throw new CannotAcquireLockException("Deadlock detected");
+            }
+            return action.get();
+        });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(2);
+        assertThat(idempotencyKeyRepository.findById(Hashing.sha256Hex(userId + ":" + SCOPE + ":" + key)))
+            .hasValueSatisfying(stored -> assertThat(stored.getResponseStatus()).isEqualTo(201));
+    }
+
+    @Test
+    void execute_whenCompletionFails_shouldRollBackActionAndReleaseKey() {
+        String key = UUID.randomUUID().toString();
+        String username = "idempotent-" + UUID.randomUUID().toString().substring(0, 8);
+        IdempotencyKeyRepository failingRepository = mock(IdempotencyKeyRepository.class, delegatesTo(idempotencyKeyRepository));
+        doThrow(new IllegalStateException("Connection lost")).when(failingRepository).complete(anyString(), anyInt(), any());
+        Supplier<ResponseEntity<Void>> createUser = () -> {
+            executions.incrementAndGet();
+            userRepository.save(User.builder().username(username).password("password").build());
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        };
+
+        assertThatThrownBy(() -> instance(failingRepository, 100).execute(SCOPE, userId, key, Map.of("a", 1), Void.class, createUser))
+            .hasMessage("Connection lost");
+
+        assertThat(userRepository.findByUsername(username)).isEmpty();
+        assertThat(idempotencyKeyRepository.existsById(Hashing.sha256Hex(userId + ":" + SCOPE + ":" + key))).isFalse();
+
+        ResponseEntity<Void> retried = idempotencyService.execute(SCOPE, userId, key, Map.of("a", 1), Void.class, createUser);
+
+        assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(executions).hasValue(2);
+        userRepository.delete(userRepository.findByUsername(username).orElseThrow());
+    }
+
+    @Test
+    void purgeExpiredKeys_shouldDeleteOnlyExpiredKeys() {
+        Instant now = Instant.now();
+        List<String> keyHashes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            keyHashes.add(idempotencyKeyRepository.save(storedKey(now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)))).getKeyHash());
+        }
+        IdempotencyKey live = idempotencyKeyRepository.save(storedKey(now, now.plus(Duration.ofDays(1))));
+        keyHashes.add(live.getKeyHash());
+
+        instance(idempotencyKeyRepository, 2).purgeExpiredKeys();
+
+        assertThat(idempotencyKeyRepository.findAllById(keyHashes))
+            .extracting(IdempotencyKey::getKeyHash)
+            .containsExactly(live.getKeyHash());
+    }
+
+    private IdempotencyService instance(IdempotencyKeyRepository repository, int purgeBatchSize) {
+        return new IdempotencyService(
+            repository,
+            objectMapper,
+            transactionManager,
+            Duration.ofHours(1),
+            Duration.ofSeconds(5),
+            100,
+            Duration.ofMinutes(1),
+            purgeBatchSize,
+            1,
+            10,
+            100,
+            2
+        );
+    }
+
+    private Supplier<ResponseEntity<CardResponse>> action() {
+        return () -> {
+            executions.incrementAndGet();
+            return new ResponseEntity<>(new CardResponse(
+                UUID.randomUUID(),
+                "************1234",
+                "12/30",
+                CardStatus.ACTIVE,
+                new BigDecimal("100.00"),
+                new CardResponse.CardholderResponse(userId, "user")
+            ), HttpStatus.CREATED);
+        };
+    }
+
+    private Supplier<ResponseEntity<CardResponse>> slowAction() {
+        Supplier<ResponseEntity<CardResponse>> action = action();
+        return () -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return action.get();
+        };
+    }
+
+    private CardResponse body(Future<ResponseEntity<CardResponse>> response) {
+        try {
+            return response.get().getBody();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private IdempotencyKey storedKey(Instant createdAt, Instant expiresAt) {
+        return IdempotencyKey.builder()
+            .keyHash(UUID.randomUUID().toString().replace("-", ""))
+            .requestHash("hash")
+            .responseStatus(200)
+            .createdAt(createdAt)
+            .expiresAt(expiresAt)
+            .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferMetricsTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransferMetrics transferMetrics = new TransferMetrics(meterRegistry);
+
+    @Test
+    void record_shouldClassifyFailuresByOutcome() {
+        long startedAt = System.nanoTime();
+
+        transferMetrics.record(TransferMetrics.Endpoint.TRANSFER, TransferMetrics.Outcome.SUCCESS, startedAt);
+        transferMetrics.record(TransferMetrics.Endpoint.TRANSFER, new ConcurrencyFailureException("Card state changed"), startedAt);
+        transferMetrics.record(TransferMetrics.Endpoint.TRANSFER, new EntityNotFoundException("Card not found"), startedAt);
+        transferMetrics.record(TransferMetrics.Endpoint.TRANSFER_BATCH, new RuntimeException("Boom"), startedAt);
+
+        assertThat(count("transfer", "success")).isEqualTo(1);
+        assertThat(count("transfer", "conflict")).isEqualTo(1);
+        assertThat(count("transfer", "rejected")).isEqualTo(1);
+        assertThat(count("transfer_batch", "error")).isEqualTo(1);
+        assertThat(count("transfer_batch", "success")).isZero();
+    }
+
+    @Test
+    void onError_shouldCountOnlyConcurrencyFailures() {
+        transferMetrics.onError(null, null, new ConcurrencyFailureException("Could not serialize access"));
+        transferMetrics.onError(null, null, new IllegalStateException("Insufficient funds"));
+
+        assertThat(meterRegistry.get("bank.transfer.conflicts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejected_shouldCountByReason() {
+        transferMetrics.rejected(TransferMetrics.Reason.INSUFFICIENT_FUNDS);
+        transferMetrics.rejected(TransferMetrics.Reason.INSUFFICIENT_FUNDS);
+        transferMetrics.rejected(TransferMetrics.Reason.INACTIVE_CARD);
+
+        assertThat(meterRegistry.get("bank.transfer.rejections").tag("reason", "insufficient_funds").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("bank.transfer.rejections").tag("reason", "inactive_card").counter().count()).isEqualTo(1);
+    }
+
+    private long count(String endpoint, String outcome) {
+        return meterRegistry.get("bank.transfer").tag("endpoint", endpoint).tag("outcome", outcome).timer().count();
+    }
+}
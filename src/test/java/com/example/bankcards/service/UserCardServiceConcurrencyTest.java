@@ -0,0 +1,278 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CursorPageResponse;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.UpdateBalanceStripesRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.TransactionType;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.TestCards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+public class UserCardServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    @Autowired
+    private UserCardService userCardService;
+
+    @Autowired
+    private AdminCardService adminCardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+    private Card hotCard;
+    private List<Card> otherCards;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+            .username("hot-card-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+
+        hotCard = cardRepository.save(createCard());
+        otherCards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            otherCards.add(cardRepository.save(createCard()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardIds().forEach(id -> jdbcTemplate.update("DELETE FROM card_transactions WHERE card_id = ?", id));
+        cardRepository.deleteAll(cardRepository.findAllById(cardIds()));
+        userRepository.delete(user);
+    }
+
+    @Test
+    void transferMoney_whenManyThreadsHitSameCard_shouldConserveMoneyWithoutFailures() throws Exception {
+        transferConcurrently();
+    }
+
+    @Test
+    void transferMoney_whenManyThreadsHitStripedCard_shouldConserveMoneyWithoutFailures() throws Exception {
+        adminCardService.updateBalanceStripes(hotCard.getId(), new UpdateBalanceStripesRequest(8));
+
+        transferConcurrently();
+
+        adminCardService.updateBalanceStripes(hotCard.getId(), new UpdateBalanceStripesRequest(0));
+        Card unstripedCard = cardRepository.findById(hotCard.getId()).orElseThrow();
+        assertThat(unstripedCard.getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+        assertThat(unstripedCard.getBalanceStripes()).isZero();
+    }
+
+    @Test
+    void transferMoney_whenNoStripeCoversDebit_shouldConsolidateStripes() {
+        adminCardService.updateBalanceStripes(hotCard.getId(), new UpdateBalanceStripesRequest(4));
+        Card otherCard = otherCards.getFirst();
+
+        // Each stripe holds a quarter, so only the whole balance covers this
+        BigDecimal amount = new BigDecimal("90000.00");
+        userCardService.transferMoney(user, new TransferRequest(hotCard.getId().toString(), otherCard.getId().toString(), amount));
+
+        assertThat(cardRepository.findById(hotCard.getId()).orElseThrow().getTotalBalance())
+            .isEqualByComparingTo(INITIAL_BALANCE.subtract(amount));
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT balance FROM card_balance_stripes WHERE card_id = ? ORDER BY stripe", BigDecimal.class, hotCard.getId()))
+            .usingElementComparator(BigDecimal::compareTo)
+            .containsExactly(
+                new BigDecimal("2500.00"),
+                new BigDecimal("2500.00"),
+                new BigDecimal("2500.00"),
+                new BigDecimal("2500.00")
+            );
+
+        assertThatThrownBy(() -> userCardService.transferMoney(user, new TransferRequest(
+            hotCard.getId().toString(),
+            otherCard.getId().toString(),
+            new BigDecimal("10000.01")
+        )))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Insufficient funds");
+    }
+
+    @Test
+    void transferMoney_onStripedCard_shouldLeaveItsRowUnlocked() {
+        adminCardService.updateBalanceStripes(hotCard.getId(), new UpdateBalanceStripesRequest(4));
+        Card otherCard = otherCards.getFirst();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userCardService.transferMoney(user, new TransferRequest(hotCard.getId().toString(), otherCard.getId().toString(), AMOUNT));
+
+            assertThat(isLocked(hotCard.getId())).isFalse();
+            assertThat(isLocked(otherCard.getId())).isTrue();
+        });
+
+        assertThat(cardRepository.findById(hotCard.getId()).orElseThrow().getTotalBalance())
+            .isEqualByComparingTo(INITIAL_BALANCE.subtract(AMOUNT));
+    }
+
+    @Test
+    void transferMoneyBatch_withForeignCard_shouldRejectItWithoutLocking() {
+        User otherUser = userRepository.save(User.builder()
+            .username("foreign-" + UUID.randomUUID().toString().substring(0, 8))
+            .password("password")
+            .build());
+        Card foreignCard = cardRepository.save(createCard(otherUser));
+        BatchTransferRequest request = new BatchTransferRequest(
+            List.of(new TransferRequest(hotCard.getId().toString(), foreignCard.getId().toString(), AMOUNT)),
+            BatchTransferRequest.Mode.BEST_EFFORT
+        );
+
+        try {
+            // The outer transaction keeps whatever the batch locked until the checks are done
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                BatchTransferResponse response = userCardService.transferMoneyBatch(user, request);
+
+                assertThat(response.results().getFirst().status()).isEqualTo(BatchTransferResponse.Status.REJECTED);
+                assertThat(isLocked(hotCard.getId())).isTrue();
+                assertThat(isLocked(foreignCard.getId())).isFalse();
+            });
+        } finally {
+            cardRepository.delete(foreignCard);
+            userRepository.delete(otherUser);
+        }
+    }
+
+    private void transferConcurrently() throws Exception {
+        BigDecimal totalBefore = totalBalance();
+
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            Card otherCard = otherCards.get(thread % otherCards.size());
+            boolean fromHotCard = thread % 2 == 0;
+
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    UUID source = fromHotCard ? hotCard.getId() : otherCard.getId();
+                    UUID destination = fromHotCard ? otherCard.getId() : hotCard.getId();
+
+                    try {
+                        userCardService.transferMoney(user, new TransferRequest(
+                            source.toString(),
+                            destination.toString(),
+                            AMOUNT
+                        ));
+                    } catch (Throwable ex) {
+                        failures.add(ex);
+                    }
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(failures).isEmpty();
+        assertThat(totalBalance()).isEqualByComparingTo(totalBefore);
+
+        assertThat(cardRepository.findById(hotCard.getId()).orElseThrow().getTotalBalance())
+            .isEqualByComparingTo(INITIAL_BALANCE);
+
+        List<CardTransactionResponse> history = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageResponse<CardTransactionResponse> page = userCardService.getCardTransactions(user, hotCard.getId(), cursor, 100);
+            history.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(history).hasSize(THREADS * TRANSFERS_PER_THREAD);
+        assertThat(history).extracting(CardTransactionResponse::id).doesNotHaveDuplicates();
+        assertThat(history).extracting(CardTransactionResponse::createdAt).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(history.stream()
+            .map(entry -> entry.type() == TransactionType.CREDIT ? entry.amount() : entry.amount().negate())
+            .reduce(BigDecimal.ZERO, BigDecimal::add))
+            .isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    private Card createCard() {
+        return createCard(user);
+    }
+
+    private Card createCard(User holder) {
+        return TestCards.card(holder).balance(INITIAL_BALANCE).build();
+    }
+
+    private boolean isLocked(UUID cardId) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id FROM cards WHERE id = ? FOR UPDATE NOWAIT")) {
+            statement.setObject(1, cardId);
+            statement.executeQuery().close();
+            return false;
+        } catch (SQLException ex) {
+            if ("55P03".equals(ex.getSQLState())) {
+                return true;
+            }
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private List<UUID> cardIds() {
+        List<UUID> ids = new ArrayList<>();
+        ids.add(hotCard.getId());
+        otherCards.forEach(card -> ids.add(card.getId()));
+        return ids;
+    }
+
+    private BigDecimal totalBalance() {
+        return cardRepository.findAllById(cardIds()).stream()
+            .map(Card::getTotalBalance)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -1,10 +1,19 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardTransaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.TransactionType;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.projections.BalanceChange;
+import com.example.bankcards.repository.projections.CardTransferState;
+import com.example.bankcards.repository.projections.CardView;
 import com.example.bankcards.util.CardMapper;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
@@ -13,10 +22,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 
@@ -27,6 +38,7 @@ import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
@@ -35,9 +47,21 @@ public class UserCardServiceTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private CardTransactionRepository cardTransactionRepository;
+
     @Mock
     private CardMapper cardMapper;
 
+    @Mock
+    private TransferMetrics transferMetrics;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private CardSummaryService cardSummaryService;
+
     @InjectMocks
     private UserCardService userCardService;
 
@@ -48,14 +72,14 @@ public class UserCardServiceTest {
             .build();
         Pageable pageable = PageRequest.of(0, 10);
 
-        Page<Card> cardPage = new PageImpl<>(List.of(new Card(), new Card()));
+        Page<CardView> cardPage = new PageImpl<>(List.of(cardView(), cardView()));
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(cardPage);
+        when(cardRepository.findAllViews(any(Specification.class), any(Pageable.class))).thenReturn(cardPage);
 
-        userCardService.getUserCards(user, null, null, pageable);
+        userCardService.getUserCards(user, null, null, pageable, PageResponse.CountMode.EXACT);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
-        verify(cardMapper, times(2)).mapToCardResponse(any(Card.class));
+        verify(cardRepository).findAllViews(any(Specification.class), eq(PageRequest.of(0, 10, Sort.by("id"))));
+        verify(cardMapper, times(2)).mapToCardResponse(any(CardView.class));
     }
 
     @Test
@@ -70,7 +94,7 @@ public class UserCardServiceTest {
             .holder(user)
             .build();
 
-        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+        when(cardRepository.findWithHolderById(card.getId())).thenReturn(Optional.of(card));
         when(cardRepository.save(any(Card.class))).thenReturn(card);
 
         userCardService.blockCard(user, card.getId());
@@ -80,6 +104,7 @@ public class UserCardServiceTest {
 
         Card savedCard = cardArgumentCaptor.getValue();
         assertThat(savedCard.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        verify(cardSummaryService).statusChanged(card, CardStatus.ACTIVE);
     }
 
     @Test
@@ -89,7 +114,7 @@ public class UserCardServiceTest {
             .id(UUID.randomUUID())
             .build();
 
-        when(cardRepository.findById(nonExistentCardId)).thenReturn(Optional.empty());
+        when(cardRepository.findWithHolderById(nonExistentCardId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> userCardService.blockCard(user, nonExistentCardId))
             .isInstanceOf(EntityNotFoundException.class)
@@ -114,7 +139,7 @@ public class UserCardServiceTest {
             .holder(cardHolder)
             .build();
 
-        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+        when(cardRepository.findWithHolderById(card.getId())).thenReturn(Optional.of(card));
 
         assertThatThrownBy(() -> userCardService.blockCard(user, card.getId()))
             .isInstanceOf(AccessDeniedException.class)
@@ -135,7 +160,7 @@ public class UserCardServiceTest {
             .holder(user)
             .build();
 
-        when(cardRepository.findById(card.getId())).thenReturn(Optional.of(card));
+        when(cardRepository.findWithHolderById(card.getId())).thenReturn(Optional.of(card));
 
         assertThatThrownBy(() -> userCardService.blockCard(user, card.getId()))
             .isInstanceOf(IllegalStateException.class)
@@ -145,39 +170,41 @@ public class UserCardServiceTest {
     }
 
     @Test
-    void transferMoney_whenSuccessful_shouldUpdateBalanceAndSaveChanges() {
+    void transferMoney_whenSuccessful_shouldDebitAndCreditCards() {
         User user = User.builder()
             .id(UUID.randomUUID())
             .build();
 
-        Card sourceCard = Card.builder()
-            .id(UUID.randomUUID())
-            .status(CardStatus.ACTIVE)
-            .balance(new BigDecimal("1000.00"))
-            .holder(user)
-            .build();
-
-        Card destinationCard = Card.builder()
-            .id(UUID.randomUUID())
-            .status(CardStatus.ACTIVE)
-            .balance(new BigDecimal("500.00"))
-            .holder(user)
-            .build();
+        UUID sourceCardId = UUID.randomUUID();
+        UUID destinationCardId = UUID.randomUUID();
+        BigDecimal amount = new BigDecimal("200.00");
 
         TransferRequest request = new TransferRequest(
-            sourceCard.getId().toString(),
-            destinationCard.getId().toString(),
-            new BigDecimal("200.00")
+            sourceCardId.toString(),
+            destinationCardId.toString(),
+            amount
         );
 
-        when(cardRepository.findAllById(anyList())).thenReturn(List.of(sourceCard, destinationCard));
+        when(cardRepository.debit(eq(sourceCardId), eq(user.getId()), eq(amount), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        when(cardRepository.credit(eq(destinationCardId), eq(user.getId()), eq(amount), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
 
         userCardService.transferMoney(user, request);
 
-        assertThat(sourceCard.getBalance()).isEqualByComparingTo("800.00");
-        assertThat(destinationCard.getBalance()).isEqualByComparingTo("700.00");
-
-        verify(cardRepository, times(1)).saveAll(anyList());
+        verify(cardRepository).debit(eq(sourceCardId), eq(user.getId()), eq(amount), anyInt());
+        verify(cardRepository).credit(eq(destinationCardId), eq(user.getId()), eq(amount), anyInt());
+        verify(cardRepository, never()).findTransferStates(anyList());
+
+        ArgumentCaptor<List<CardTransaction>> entriesCaptor = ArgumentCaptor.captor();
+        verify(cardTransactionRepository).saveAll(entriesCaptor.capture());
+        assertThat(entriesCaptor.getValue())
+            .extracting(CardTransaction::getCardId, CardTransaction::getType, CardTransaction::getAmount)
+            .containsExactly(
+                tuple(sourceCardId, TransactionType.DEBIT, amount),
+                tuple(destinationCardId, TransactionType.CREDIT, amount)
+            );
+        assertThat(entriesCaptor.getValue())
+            .extracting(CardTransaction::getTransferId)
+            .containsOnly(entriesCaptor.getValue().getFirst().getTransferId());
     }
 
     @Test
@@ -186,13 +213,11 @@ public class UserCardServiceTest {
             .id(UUID.randomUUID())
             .build();
 
-        Card sourceCard = Card.builder()
-            .id(UUID.randomUUID())
-            .build();
+        UUID cardId = UUID.randomUUID();
 
         TransferRequest request = new TransferRequest(
-            sourceCard.getId().toString(),
-            sourceCard.getId().toString(),
+            cardId.toString(),
+            cardId.toString(),
             new BigDecimal("200.00")
         );
 
@@ -200,8 +225,8 @@ public class UserCardServiceTest {
             .isInstanceOf(IllegalArgumentException.class)
             .hasMessage("Cannot transfer money to the same card");
 
-        verify(cardRepository, never()).findAllById(anyList());
-        verify(cardRepository, never()).saveAll(anyList());
+        verify(cardRepository, never()).debit(any(), any(), any(), anyInt());
+        verify(cardRepository, never()).credit(any(), any(), any(), anyInt());
     }
 
     @Test
@@ -219,11 +244,11 @@ public class UserCardServiceTest {
             new BigDecimal("200.00")
         );
 
-        Card foundCard = Card.builder()
-            .id(foundCardId)
-            .build();
-
-        when(cardRepository.findAllById(anyList())).thenReturn(List.of(foundCard));
+        lenient().when(cardRepository.debit(any(), any(), any(), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        lenient().when(cardRepository.credit(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(cardRepository.findTransferStates(anyList())).thenReturn(List.of(
+            new CardTransferState(foundCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("1000.00"))
+        ));
 
         assertThatThrownBy(() -> userCardService.transferMoney(user, request))
             .isInstanceOf(EntityNotFoundException.class)
@@ -240,29 +265,25 @@ public class UserCardServiceTest {
             .id(UUID.randomUUID())
             .build();
 
-        Card sourceCard = Card.builder()
-            .id(UUID.randomUUID())
-            .holder(firstUser)
-            .build();
-
-        Card destinationCard = Card.builder()
-            .id(UUID.randomUUID())
-            .holder(secondUser)
-            .build();
+        UUID sourceCardId = UUID.randomUUID();
+        UUID destinationCardId = UUID.randomUUID();
 
         TransferRequest request = new TransferRequest(
-            sourceCard.getId().toString(),
-            destinationCard.getId().toString(),
+            sourceCardId.toString(),
+            destinationCardId.toString(),
             new BigDecimal("200.00")
         );
 
-        when(cardRepository.findAllById(anyList())).thenReturn(List.of(sourceCard, destinationCard));
+        lenient().when(cardRepository.debit(any(), any(), any(), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        lenient().when(cardRepository.credit(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(cardRepository.findTransferStates(anyList())).thenReturn(List.of(
+            new CardTransferState(sourceCardId, firstUser.getId(), CardStatus.ACTIVE, new BigDecimal("1000.00")),
+            new CardTransferState(destinationCardId, secondUser.getId(), CardStatus.ACTIVE, new BigDecimal("500.00"))
+        ));
 
         assertThatThrownBy(() -> userCardService.transferMoney(firstUser, request))
             .isInstanceOf(AccessDeniedException.class)
             .hasMessage("You can only transfer money between your cards");
-
-        verify(cardRepository, never()).saveAll(anyList());
     }
 
     @Test
@@ -271,67 +292,227 @@ public class UserCardServiceTest {
             .id(UUID.randomUUID())
             .build();
 
-        Card sourceCard = Card.builder()
+        UUID sourceCardId = UUID.randomUUID();
+        UUID destinationCardId = UUID.randomUUID();
+
+        TransferRequest request = new TransferRequest(
+            sourceCardId.toString(),
+            destinationCardId.toString(),
+            new BigDecimal("200.00")
+        );
+
+        lenient().when(cardRepository.debit(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        lenient().when(cardRepository.credit(any(), any(), any(), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        when(cardRepository.findTransferStates(anyList())).thenReturn(List.of(
+            new CardTransferState(sourceCardId, user.getId(), CardStatus.BLOCKED, new BigDecimal("1000.00")),
+            new CardTransferState(destinationCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("500.00"))
+        ));
+
+        assertThatThrownBy(() -> userCardService.transferMoney(user, request))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Cannot transfer money due to source or destination card being not active");
+
+        verify(transferMetrics).rejected(TransferMetrics.Reason.INACTIVE_CARD);
+    }
+
+    @Test
+    void transferMoney_whenInsufficientFunds_shouldThrowException() {
+        User user = User.builder()
             .id(UUID.randomUUID())
-            .status(CardStatus.BLOCKED)
-            .holder(user)
             .build();
 
-        Card destinationCard = Card.builder()
+        UUID sourceCardId = UUID.randomUUID();
+        UUID destinationCardId = UUID.randomUUID();
+
+        TransferRequest request = new TransferRequest(
+            sourceCardId.toString(),
+            destinationCardId.toString(),
+            new BigDecimal("200.00")
+        );
+
+        lenient().when(cardRepository.debit(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        lenient().when(cardRepository.credit(any(), any(), any(), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        when(cardRepository.findTransferStates(anyList())).thenReturn(List.of(
+            new CardTransferState(sourceCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("100.00")),
+            new CardTransferState(destinationCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("500.00"))
+        ));
+
+        assertThatThrownBy(() -> userCardService.transferMoney(user, request))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Insufficient funds");
+
+        verify(transferMetrics).rejected(TransferMetrics.Reason.INSUFFICIENT_FUNDS);
+    }
+
+    @Test
+    void transferMoney_whenCardChangesConcurrently_shouldThrowRetryableException() {
+        User user = User.builder()
             .id(UUID.randomUUID())
-            .status(CardStatus.ACTIVE)
-            .holder(user)
             .build();
 
+        UUID sourceCardId = UUID.randomUUID();
+        UUID destinationCardId = UUID.randomUUID();
+
         TransferRequest request = new TransferRequest(
-            sourceCard.getId().toString(),
-            destinationCard.getId().toString(),
+            sourceCardId.toString(),
+            destinationCardId.toString(),
             new BigDecimal("200.00")
         );
 
-        when(cardRepository.findAllById(anyList())).thenReturn(List.of(sourceCard, destinationCard));
+        lenient().when(cardRepository.debit(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        lenient().when(cardRepository.credit(any(), any(), any(), anyInt())).thenReturn(Optional.of(new BalanceChange(0, true)));
+        when(cardRepository.findTransferStates(anyList())).thenReturn(List.of(
+            new CardTransferState(sourceCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("1000.00")),
+            new CardTransferState(destinationCardId, user.getId(), CardStatus.ACTIVE, new BigDecimal("500.00"))
+        ));
 
         assertThatThrownBy(() -> userCardService.transferMoney(user, request))
-            .isInstanceOf(IllegalStateException.class)
-            .hasMessage("Cannot transfer money due to source or destination card being not active");
+            .isInstanceOf(ConcurrencyFailureException.class);
 
-        verify(cardRepository, never()).saveAll(anyList());
+        verifyNoInteractions(transferMetrics);
     }
 
     @Test
-    void transferMoney_whenInsufficientFunds_shouldThrowException() {
+    void transferMoneyBatch_whenBestEffort_shouldApplyValidTransfersAndRejectOthers() {
         User user = User.builder()
             .id(UUID.randomUUID())
             .build();
 
-        Card sourceCard = Card.builder()
+        Card firstCard = Card.builder()
             .id(UUID.randomUUID())
             .status(CardStatus.ACTIVE)
             .balance(new BigDecimal("100.00"))
             .holder(user)
             .build();
 
-        Card destinationCard = Card.builder()
+        Card secondCard = Card.builder()
             .id(UUID.randomUUID())
             .status(CardStatus.ACTIVE)
-            .balance(new BigDecimal("500.00"))
+            .balance(new BigDecimal("50.00"))
             .holder(user)
             .build();
 
-        TransferRequest request = new TransferRequest(
-            sourceCard.getId().toString(),
-            destinationCard.getId().toString(),
-            new BigDecimal("200.00")
+        BatchTransferRequest request = new BatchTransferRequest(
+            List.of(
+                new TransferRequest(firstCard.getId().toString(), secondCard.getId().toString(), new BigDecimal("80.00")),
+                new TransferRequest(firstCard.getId().toString(), secondCard.getId().toString(), new BigDecimal("30.00")),
+                new TransferRequest(secondCard.getId().toString(), firstCard.getId().toString(), new BigDecimal("10.00"))
+            ),
+            BatchTransferRequest.Mode.BEST_EFFORT
         );
 
-        when(cardRepository.findAllById(anyList())).thenReturn(List.of(sourceCard, destinationCard));
+        when(cardRepository.findAllByIdAndHolderIdForUpdate(anyList(), eq(user.getId()))).thenReturn(List.of(firstCard, secondCard));
+
+        BatchTransferResponse response = userCardService.transferMoneyBatch(user, request);
+
+        assertThat(response.committed()).isTrue();
+        assertThat(response.results())
+            .extracting(BatchTransferResponse.TransferResult::status)
+            .containsExactly(
+                BatchTransferResponse.Status.APPLIED,
+                BatchTransferResponse.Status.REJECTED,
+                BatchTransferResponse.Status.APPLIED
+            );
+        assertThat(response.results().get(1).reason()).isEqualTo("Insufficient funds");
+        assertThat(firstCard.getBalance()).isEqualByComparingTo("30.00");
+        assertThat(secondCard.getBalance()).isEqualByComparingTo("120.00");
+
+        ArgumentCaptor<List<CardTransaction>> entriesCaptor = ArgumentCaptor.captor();
+        verify(cardTransactionRepository).saveAll(entriesCaptor.capture());
+        assertThat(entriesCaptor.getValue()).hasSize(4);
+    }
 
-        assertThatThrownBy(() -> userCardService.transferMoney(user, request))
-            .isInstanceOf(IllegalStateException.class)
-            .hasMessage("Insufficient funds");
-        assertThat(sourceCard.getBalance()).isEqualByComparingTo("100.00");
+    @Test
+    void transferMoneyBatch_whenAllOrNothingAndOneTransferIsRejected_shouldNotChangeBalances() {
+        User user = User.builder()
+            .id(UUID.randomUUID())
+            .build();
+
+        Card firstCard = Card.builder()
+            .id(UUID.randomUUID())
+            .status(CardStatus.ACTIVE)
+            .balance(new BigDecimal("100.00"))
+            .holder(user)
+            .build();
+
+        Card secondCard = Card.builder()
+            .id(UUID.randomUUID())
+            .status(CardStatus.BLOCKED)
+            .balance(new BigDecimal("50.00"))
+            .holder(user)
+            .build();
 
-        verify(cardRepository, never()).saveAll(anyList());
+        Card thirdCard = Card.builder()
+            .id(UUID.randomUUID())
+            .status(CardStatus.ACTIVE)
+            .balance(new BigDecimal("0.00"))
+            .holder(user)
+            .build();
+
+        BatchTransferRequest request = new BatchTransferRequest(
+            List.of(
+                new TransferRequest(firstCard.getId().toString(), thirdCard.getId().toString(), new BigDecimal("10.00")),
+                new TransferRequest(firstCard.getId().toString(), secondCard.getId().toString(), new BigDecimal("10.00"))
+            ),
+            BatchTransferRequest.Mode.ALL_OR_NOTHING
+        );
+
+        when(cardRepository.findAllByIdAndHolderIdForUpdate(anyList(), eq(user.getId()))).thenReturn(List.of(firstCard, secondCard, thirdCard));
+
+        BatchTransferResponse response = userCardService.transferMoneyBatch(user, request);
+
+        assertThat(response.committed()).isFalse();
+        assertThat(response.results())
+            .extracting(BatchTransferResponse.TransferResult::status)
+            .containsExactly(BatchTransferResponse.Status.ROLLED_BACK, BatchTransferResponse.Status.REJECTED);
+        assertThat(firstCard.getBalance()).isEqualByComparingTo("100.00");
+        assertThat(thirdCard.getBalance()).isEqualByComparingTo("0.00");
     }
 
+    @Test
+    void transferMoneyBatch_whenCardIsForeign_shouldRejectWithoutLockingIt() {
+        User user = User.builder()
+            .id(UUID.randomUUID())
+            .build();
+
+        Card ownCard = Card.builder()
+            .id(UUID.randomUUID())
+            .status(CardStatus.ACTIVE)
+            .balance(new BigDecimal("100.00"))
+            .holder(user)
+            .build();
+        CardTransferState foreignCard = new CardTransferState(
+            UUID.randomUUID(), UUID.randomUUID(), CardStatus.ACTIVE, new BigDecimal("100.00")
+        );
+
+        BatchTransferRequest request = new BatchTransferRequest(
+            List.of(new TransferRequest(ownCard.getId().toString(), foreignCard.id().toString(), new BigDecimal("10.00"))),
+            BatchTransferRequest.Mode.BEST_EFFORT
+        );
+
+        when(cardRepository.findAllByIdAndHolderIdForUpdate(anyList(), eq(user.getId()))).thenReturn(List.of(ownCard));
+        when(cardRepository.findTransferStates(List.of(foreignCard.id()))).thenReturn(List.of(foreignCard));
+
+        BatchTransferResponse response = userCardService.transferMoneyBatch(user, request);
+
+        assertThat(response.results())
+            .extracting(BatchTransferResponse.TransferResult::status)
+            .containsExactly(BatchTransferResponse.Status.REJECTED);
+        assertThat(response.results().getFirst().reason()).isEqualTo("You can only transfer money between your cards");
+        assertThat(ownCard.getBalance()).isEqualByComparingTo("100.00");
+        verify(cardRepository, never()).findAllByIdForUpdate(anyList());
+    }
+
+    private CardView cardView() {
+        return new CardView(
+            UUID.randomUUID(),
+            "1234",
+            "12/30",
+            CardStatus.ACTIVE,
+            new BigDecimal("100.00"),
+            UUID.randomUUID(),
+            "user",
+            0L
+        );
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CryptoConverterTest {
+    private static final String SECRET = "a6d8a1eb2314b9b3944beb67d3cea119";
+
+    private final CryptoConverter cryptoConverter = new CryptoConverter(SECRET);
+
+    @Test
+    void convertToEntityAttribute_shouldDecryptExistingData() {
+        // Produced with: openssl enc -aes-256-ecb -K <hex of SECRET> | base64
+        String stored = "zvhdy+Kzwtg81k8v3o4qsRdFTJV3UfnhUomugrU1bBM=";
+
+        assertThat(cryptoConverter.convertToEntityAttribute(stored)).isEqualTo("4111111111111111");
+        assertThat(cryptoConverter.convertToDatabaseColumn("4111111111111111")).isEqualTo(stored);
+    }
+
+    @Test
+    void convertToEntityAttribute_afterFailedDecrypt_shouldKeepWorking() {
+        assertThatThrownBy(() -> cryptoConverter.convertToEntityAttribute("AAAAAAAAAAAAAAAAAAAAAA=="))
+            .isInstanceOf(IllegalStateException.class);
+
+        String encrypted = cryptoConverter.convertToDatabaseColumn("1234567812345678");
+        assertThat(cryptoConverter.convertToEntityAttribute(encrypted)).isEqualTo("1234567812345678");
+    }
+
+    @Test
+    void convert_whenUsedConcurrently_shouldRoundTrip() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> results = IntStream.range(0, 1_000)
+                .mapToObj(i -> executor.submit(() -> {
+                    String number = String.format("%016d", i);
+                    return number.equals(cryptoConverter.convertToEntityAttribute(
+                        cryptoConverter.convertToDatabaseColumn(number)
+                    ));
+                }))
+                .toList();
+
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashingTest {
+    @Test
+    void sha256Hex_shouldMatchKnownDigest() {
+        assertThat(Hashing.sha256Hex("abc"))
+            .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Cards that can be saved as they are: an active card with a random number, expiring 01/30, with a balance of 10
+public final class TestCards {
+    private TestCards() {
+    }
+
+    public static String randomNumber() {
+        return String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+    }
+
+    public static Card.CardBuilder card(User holder) {
+        String number = randomNumber();
+        return Card.builder()
+            .number(number)
+            .numberHash(UUID.randomUUID().toString())
+            .numberLast4(number.substring(12))
+            .expiryDate("01/30")
+            .status(CardStatus.ACTIVE)
+            .balance(BigDecimal.TEN)
+            .holder(holder);
+    }
+}